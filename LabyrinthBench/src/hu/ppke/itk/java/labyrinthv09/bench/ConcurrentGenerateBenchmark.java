@@ -0,0 +1,71 @@
+package hu.ppke.itk.java.labyrinthv09.bench;
+
+import hu.ppke.itk.java.labyrinthv09.server.Labyrinth;
+import hu.ppke.itk.java.labyrinthv09.server.Maze;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Több szálon, egyetlen közös {@link Labyrinth} példánnyal generál, ahogy a
+ * munkamenetek a szerver közös generátorát használják. Minden labirintust
+ * összevet az ugyanarra a seedre egy szálon előre generált labirintussal, és
+ * eltérés esetén kivétellel leállítja a mérést.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class ConcurrentGenerateBenchmark {
+    static final int SEEDS = 64;
+
+    @Param({"21", "100", "500"})
+    public int size;
+
+    private Labyrinth shared;
+    private int[][][] expected;
+
+    @Setup
+    public void setup() {
+        Labyrinth reference = new Labyrinth(size, size);
+        expected = new int[SEEDS][][];
+        for (int i = 0; i < SEEDS; i++) {
+            expected[i] = reference.generate(seed(i)).toArray();
+        }
+        shared = new Labyrinth(size, size);
+    }
+
+    @State(Scope.Thread)
+    public static class Counter {
+        int next;
+
+        @Setup
+        public void setup() {
+            // Threads start at different seeds, so the same seed is generated concurrently too
+            next = (int) (Thread.currentThread().getId() * 7);
+        }
+    }
+
+    @Benchmark
+    public Maze generate(Counter counter) {
+        int i = (counter.next++ & Integer.MAX_VALUE) % SEEDS;
+        Maze maze = shared.generate(seed(i));
+        int[][] cells = expected[i];
+        for (int y = 0; y < maze.rows; y++) {
+            for (int x = 0; x < maze.cols; x++) {
+                if (maze.get(x, y) != cells[y][x]) {
+                    throw new IllegalStateException("Seed " + seed(i) + " differs from the single-threaded maze at ("
+                        + x + ", " + y + ")");
+                }
+            }
+        }
+        return maze;
+    }
+
+    private static String seed(int i) {
+        return "seed" + i;
+    }
+}
@@ -0,0 +1,34 @@
+package hu.ppke.itk.java.labyrinthv09.bench;
+
+import hu.ppke.itk.java.labyrinthv09.server.Labyrinth;
+import hu.ppke.itk.java.labyrinthv09.server.Maze;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link Labyrinth#generate} DFS generálás ideje különböző méretekre.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GenerateBenchmark {
+    @Param({"5", "100", "500", "2000"})
+    public int size;
+
+    private Labyrinth labyrinth;
+    private int counter;
+
+    @Setup
+    public void setup() {
+        labyrinth = new Labyrinth(size, size);
+    }
+
+    @Benchmark
+    public Maze generate() {
+        return labyrinth.generate("seed" + (counter++ & 63));
+    }
+}
@@ -0,0 +1,104 @@
+package hu.ppke.itk.java.labyrinthv09.bench;
+
+import hu.ppke.itk.java.labyrinthv09.LabyrinthProtos.*;
+import com.google.protobuf.InvalidProtocolBufferException;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A leggyakoribb kérések és válaszok protobuf kódolása és visszafejtése.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProtocolBenchmark {
+    private Request moveTo;
+    private Response lookAround;
+    private Response window;
+
+    private byte[] moveToBytes;
+    private byte[] lookAroundBytes;
+    private byte[] windowBytes;
+
+    @Setup
+    public void setup() {
+        moveTo = Request.newBuilder()
+            .setMoveToRequest(moveToRequest.newBuilder()
+                .setSessionId("a1b2c3d4")
+                .setLabyrinthId("lab_r100c100.txt")
+                .setDirection(Direction.EAST)
+                .setWithView(true))
+            .setRequestId(12345)
+            .build();
+
+        lookAroundResponse.View view = lookAroundResponse.View.newBuilder()
+            .setCenter(ViewElement.WAY)
+            .setNorth(ViewElement.WALL)
+            .setEast(ViewElement.WAY)
+            .setSouth(ViewElement.WALL)
+            .setWest(ViewElement.WAY)
+            .build();
+
+        lookAround = Response.newBuilder()
+            .setLookAroundResponse(lookAroundResponse.newBuilder()
+                .setSessionId("a1b2c3d4")
+                .setLabyrinthId("lab_r100c100.txt")
+                .setStatus(Status.SUCCESS)
+                .setView(view))
+            .setRequestId(12345)
+            .build();
+
+        // A radius-4 window, 81 cells
+        var lar = lookAroundResponse.newBuilder()
+            .setSessionId("a1b2c3d4")
+            .setLabyrinthId("lab_r100c100.txt")
+            .setStatus(Status.SUCCESS)
+            .setView(view)
+            .setRadius(4);
+        for (int i = 0; i < 81; i++) {
+            lar.addWindow(i % 3 == 0 ? ViewElement.WALL : ViewElement.WAY);
+        }
+        window = Response.newBuilder()
+            .setLookAroundResponse(lar)
+            .setRequestId(12345)
+            .build();
+
+        moveToBytes = moveTo.toByteArray();
+        lookAroundBytes = lookAround.toByteArray();
+        windowBytes = window.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] encodeMoveToRequest() {
+        return moveTo.toByteArray();
+    }
+
+    @Benchmark
+    public Request decodeMoveToRequest() throws InvalidProtocolBufferException {
+        return Request.parseFrom(moveToBytes);
+    }
+
+    @Benchmark
+    public byte[] encodeLookAroundResponse() {
+        return lookAround.toByteArray();
+    }
+
+    @Benchmark
+    public Response decodeLookAroundResponse() throws InvalidProtocolBufferException {
+        return Response.parseFrom(lookAroundBytes);
+    }
+
+    @Benchmark
+    public byte[] encodeWindowResponse() {
+        return window.toByteArray();
+    }
+
+    @Benchmark
+    public Response decodeWindowResponse() throws InvalidProtocolBufferException {
+        return Response.parseFrom(windowBytes);
+    }
+}
@@ -0,0 +1,106 @@
+package hu.ppke.itk.java.labyrinthv09.bench;
+
+import hu.ppke.itk.java.labyrinthv09.LabyrinthProtos.*;
+import hu.ppke.itk.java.labyrinthv09.server.NioServer;
+import hu.ppke.itk.java.labyrinthv09.server.Server;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.*;
+import java.net.Socket;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Egy lookAround + moveTo kérés-válasz pár körülfordulási ideje egy
+ * ugyanebben a JVM-ben futó szerverrel. A {@link Mode#SampleTime} mód a
+ * p50/p99 értékeket is kiírja.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RoundTripBenchmark {
+    static final int PORT = 6901;
+
+    @Param({"platform", "nio"})
+    public String mode;
+
+    private Socket socket;
+    private InputStream in;
+    private OutputStream out;
+
+    private Request look;
+    private Request[] moves;
+    private int counter;
+
+    @Setup
+    public void setup() throws IOException, InterruptedException {
+        Thread server = new Thread(() -> {
+            if (mode.equals("nio")) new NioServer(1).run(PORT);
+            else new Server().run(PORT);
+        }, "server");
+        server.setDaemon(true);
+        server.start();
+
+        socket = connect();
+        socket.setTcpNoDelay(true);
+        in = new BufferedInputStream(socket.getInputStream());
+        out = new BufferedOutputStream(socket.getOutputStream());
+
+        String sessionId = call(Request.newBuilder()
+            .setStartSessionRequest(startSessionRequest.newBuilder().setUsername("bench"))
+            .build()).getStartSessionResponse().getSessionId();
+
+        String labyrinthId = call(Request.newBuilder()
+            .setStartGameRequest(startGameRequest.newBuilder()
+                .setSessionId(sessionId)
+                .setLabyrinthId("lab_r100c100.txt"))
+            .build()).getStartGameResponse().getLabyrinthId();
+
+        look = Request.newBuilder()
+            .setLookAroundRequest(lookAroundRequest.newBuilder()
+                .setSessionId(sessionId)
+                .setLabyrinthId(labyrinthId))
+            .build();
+
+        moves = new Request[Direction.values().length];
+        for (Direction d : Direction.values()) {
+            moves[d.getNumber()] = Request.newBuilder()
+                .setMoveToRequest(moveToRequest.newBuilder()
+                    .setSessionId(sessionId)
+                    .setLabyrinthId(labyrinthId)
+                    .setDirection(d))
+                .build();
+        }
+    }
+
+    private static Socket connect() throws InterruptedException {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                return new Socket("localhost", PORT);
+            }
+            catch (IOException e) {
+                if (attempt == 50) throw new IllegalStateException("Server did not start.", e);
+                Thread.sleep(100);
+            }
+        }
+    }
+
+    private Response call(Request req) throws IOException {
+        req.writeDelimitedTo(out);
+        out.flush();
+        return Response.parseDelimitedFrom(in);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        socket.close();
+    }
+
+    @Benchmark
+    public Response lookAndMove() throws IOException {
+        call(look);
+        return call(moves[counter++ & 3]);
+    }
+}
@@ -0,0 +1,103 @@
+package hu.ppke.itk.java.labyrinthv09.server;
+
+import hu.ppke.itk.pakge2.LoadGenerator;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A szerver {@code --mode} végrehajtóinak összehasonlítása ugyanazzal a
+ * terheléssel: minden módhoz elindít egy szervert ebben a JVM-ben, saját
+ * porton, és a {@link LoadGenerator}-t futtatja ellene. A szerver csomagjában
+ * van, mert a végrehajtók gyárfüggvényei csomagon belüliek.
+ * <p>
+ * Az első argumentum lehet {@code --modes=<mód>[,<mód>...]}, a többi
+ * argumentumot változatlanul a {@link LoadGenerator} kapja.
+ */
+public class ExecutorComparison {
+    static final String USAGE = "ExecutorComparison [--modes=platform,pooled,virtual,nio] [<LoadGenerator options>]";
+    static final int FIRST_PORT = 6910;
+
+    public static void main(String[] args) throws InterruptedException {
+        List<String> modes = List.of("platform", "pooled", "virtual", "nio");
+        List<String> load = new ArrayList<>(List.of(
+            "--sessions=100", "--games=1", "--labyrinth=lab_r100c100.txt", "--seed=1"));
+
+        if (args.length > 0 && args[0].startsWith("--modes=")) {
+            modes = List.of(args[0].substring("--modes=".length()).split(","));
+            args = Arrays.copyOfRange(args, 1, args.length);
+        }
+        if (args.length > 0) {
+            load = List.of(args);
+        }
+
+        Server.MAX_CONNECTIONS = Integer.MAX_VALUE;
+
+        int port = FIRST_PORT;
+        for (String mode : modes) {
+            Runnable server;
+            try {
+                server = server(mode, port);
+            }
+            catch (UnsupportedOperationException e) {
+                System.out.println("== " + mode + ": " + e.getMessage());
+                continue;
+            }
+            if (server == null) {
+                System.out.println(USAGE);
+                System.exit(1);
+            }
+
+            Thread t = new Thread(server, "server-" + mode);
+            t.setDaemon(true);
+            t.start();
+            awaitServer(port);
+
+            System.out.println("== " + mode);
+            List<String> loadArgs = new ArrayList<>(List.of("localhost", Integer.toString(port)));
+            loadArgs.addAll(load);
+            LoadGenerator.main(loadArgs.toArray(new String[0]));
+            port++;
+        }
+
+        // The pooled and nio servers keep non-daemon threads running
+        System.exit(0);
+    }
+
+    /**
+     * @return a megadott módú szerver futtatása a porton, vagy null, ha nincs ilyen mód
+     * @throws UnsupportedOperationException ha a futtató JDK nem támogatja a módot
+     */
+    private static Runnable server(String mode, int port) {
+        switch (mode) {
+            case "platform":
+                return () -> new Server().run(port);
+            case "pooled":
+                Server pooled = new Server(Server.pooledExecutor(Main.DEFAULT_POOL_SIZE));
+                return () -> pooled.run(port);
+            case "virtual":
+                Server virtual = new Server(Server.virtualThreadExecutor());
+                return () -> virtual.run(port);
+            case "nio":
+                int workers = Runtime.getRuntime().availableProcessors();
+                return () -> new NioServer(workers).run(port);
+            default:
+                return null;
+        }
+    }
+
+    private static void awaitServer(int port) throws InterruptedException {
+        for (int attempt = 0; ; attempt++) {
+            try (Socket probe = new Socket("localhost", port)) {
+                return;
+            }
+            catch (IOException e) {
+                if (attempt == 50) throw new IllegalStateException("Server did not start.", e);
+                Thread.sleep(100);
+            }
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package hu.ppke.itk.java.labyrinthv09.server;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Egy szöveges labirintus fájl beolvasása, valamint a betöltött labirintus
+ * átadása és másolása. A szerver csomagjában van, mert a betöltés csomagon
+ * belüli.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LoadBenchmark {
+    @Param({"lab_r5c5.txt", "lab_r20c21.txt", "lab_r100c100.txt"})
+    public String file;
+
+    private LabyrinthLite loaded;
+
+    @Setup
+    public void setup() throws IOException {
+        loaded = LabyrinthLite.fromFile(file);
+    }
+
+    @Benchmark
+    public LabyrinthLite fromFile() throws IOException {
+        return LabyrinthLite.fromFile(file);
+    }
+
+    @Benchmark
+    public Maze getLabyrinth() {
+        return loaded.getLabyrinth();
+    }
+
+    @Benchmark
+    public Maze copy() {
+        return loaded.getLabyrinth().copy();
+    }
+}
@@ -0,0 +1,26 @@
+package hu.ppke.itk.java.labyrinthv09.server;
+
+import hu.ppke.itk.java.labyrinthv09.LabyrinthProtos.*;
+
+/**
+ * Egy munkamenet hálózat nélkül: a kéréseket közvetlenül a {@link Session}
+ * szolgálja ki. A kliens megoldójának méréséhez, hogy abban ne a hálózat
+ * legyen a meghatározó.
+ */
+public class LocalSession {
+    private final Session session = new Session();
+
+    /**
+     * @param rows a generált labirintusok sorainak száma
+     * @param cols a generált labirintusok oszlopainak száma
+     */
+    public LocalSession(int rows, int cols) {
+        Session.LABYRINTH_ROWS = rows;
+        Session.LABYRINTH_COLS = cols;
+        Log.setLevel(Log.Level.WARN);
+    }
+
+    public Response handle(Request req) {
+        return session.handle(req);
+    }
+}
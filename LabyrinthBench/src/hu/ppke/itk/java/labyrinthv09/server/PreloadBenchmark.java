@@ -0,0 +1,23 @@
+package hu.ppke.itk.java.labyrinthv09.server;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A szerver induláskor betöltött összes labirintus fájl előtöltése.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PreloadBenchmark {
+    @Benchmark
+    public LabyrinthLite preload() throws IOException {
+        return LabyrinthLite.preload(List.of(Session.labyrinthFiles));
+    }
+}
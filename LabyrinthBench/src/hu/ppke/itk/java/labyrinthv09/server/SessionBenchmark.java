@@ -0,0 +1,66 @@
+package hu.ppke.itk.java.labyrinthv09.server;
+
+import hu.ppke.itk.java.labyrinthv09.LabyrinthProtos.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A munkamenet játéklogikája hálózat nélkül: a szomszédos cellák
+ * lekérdezése, egy lépés és egy ablak összeállítása a 100x100-as
+ * labirintuson. A szerver csomagjában van, mert ezek csomagon belüliek.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SessionBenchmark {
+    private static final int MOVES = 1024;
+
+    private Session session;
+    private Point start;
+    private Direction[] moves;
+    private int counter;
+
+    @Setup
+    public void setup() throws IOException {
+        LabyrinthLite lab = LabyrinthLite.fromFile("lab_r100c100.txt");
+
+        session = new Session();
+        session.labyrinth = lab.getLabyrinth();
+        start = lab.getStart(session.labyrinth);
+        session.playerPos = start;
+
+        // A fixed random walk, so every run tries the same moves
+        Random rd = new Random(42);
+        moves = new Direction[MOVES];
+        for (int i = 0; i < MOVES; i++) {
+            moves[i] = Direction.forNumber(rd.nextInt(4));
+        }
+    }
+
+    @Benchmark
+    public lookAroundResponse.View neighbors() {
+        return session.neighbors(session.playerPos);
+    }
+
+    @Benchmark
+    public boolean tryMovePlayer() {
+        int i = counter++ & (MOVES - 1);
+        if (i == 0) {
+            session.playerPos = start;
+        }
+        return session.tryMovePlayer(moves[i]);
+    }
+
+    @Benchmark
+    public lookAroundResponse.Builder window() {
+        var lar = lookAroundResponse.newBuilder();
+        session.window(lar, session.playerPos, 4);
+        return lar;
+    }
+}
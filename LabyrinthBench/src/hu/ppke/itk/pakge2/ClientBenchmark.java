@@ -0,0 +1,63 @@
+package hu.ppke.itk.pakge2;
+
+import hu.ppke.itk.java.labyrinthv09.LabyrinthProtos.*;
+import hu.ppke.itk.java.labyrinthv09.server.LocalSession;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A kliens megoldójának egy teljes játéka hálózat nélkül: a kéréseket egy
+ * ugyanebben a JVM-ben futó munkamenet szolgálja ki, így a mérés a stratégia
+ * adatszerkezeteit, a lépések jelentését és a protokoll üzeneteket méri.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ClientBenchmark {
+    /** A nem fájlnév azonosítók magként egy 500x500-as generált labirintust jelentenek */
+    @Param({"lab_r100c100.txt", "reverse100.txt", "seed-500"})
+    public String labyrinth;
+
+    @Param({"random-dfs", "dfs", "left-wall", "right-wall", "tremaux", "frontier", "dead-end-filling"})
+    public String strategy;
+
+    private GameClient game;
+    private long moves;
+    private long games;
+
+    @Setup
+    public void setup() throws IOException {
+        LocalSession server = new LocalSession(500, 500);
+        game = new GameClient(null) {
+            @Override
+            protected Response call(Request req) {
+                return server.handle(req);
+            }
+        };
+        game.startSession("bench");
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.out.printf("%n%s: %.0f moves per game%n", strategy, (double) moves / games);
+    }
+
+    @Benchmark
+    public boolean solve() throws IOException {
+        long before = game.getMoves();
+        game.startGame(labyrinth);
+        // Seeded by the game count, so every fork plays the same sequence of games
+        boolean exit = Strategies.create(strategy, new Random(games)).solve(game);
+        game.quitGame();
+
+        moves += game.getMoves() - before;
+        games++;
+        return exit;
+    }
+}
@@ -0,0 +1,192 @@
+package hu.ppke.itk.pakge2;
+
+import hu.ppke.itk.java.labyrinthv09.LabyrinthProtos.*;
+
+import java.io.IOException;
+import java.util.*;
+
+import static hu.ppke.itk.pakge2.SolverStrategy.*;
+
+/**
+ * Zsákutca-kitöltés menet közben. A klasszikus módszer a teljes térképet ismeri, a kliens viszont csak azt, amit
+ * látott, ezért minden megállónál egy ablakot kér a környezetéről, és kitölti azokat a mezőket, amelyeknek minden
+ * szomszédja ismert, és legfeljebb egy ki nem töltött, nem fal szomszédjuk van. A kitöltés végigfut a zsákutcán a
+ * következő elágazásig. A bejárás véletlenszerű mélységi bejárás, amely kitöltött mezőre sosem lép; az elágazás
+ * nélküli, belátott folyosókon egyetlen lépéssorozattal megy végig, és ugyanígy lép vissza.
+ */
+public class DeadEndFillingStrategy implements SolverStrategy {
+    protected final Random random;
+    protected final int radius;
+
+    private ExplorationMap map;
+    private final Deque<Long> work = new ArrayDeque<>();
+
+    public DeadEndFillingStrategy() {
+        this(new Random(), FrontierStrategy.DEFAULT_RADIUS);
+    }
+
+    /**
+     * @param random Az elágazásoknál választott irány véletlenszám-generátora
+     * @param radius A megállónként kért ablak sugara
+     */
+    public DeadEndFillingStrategy(Random random, int radius) {
+        this.random = random;
+        this.radius = radius;
+    }
+
+    @Override
+    public boolean solve(GameClient game) throws IOException {
+        map = new ExplorationMap();
+        Deque<Direction> path = new ArrayDeque<>();
+        int x = 0, y = 0;
+
+        ViewElement center = look(game, x, y);
+        while (center != ViewElement.EXIT) {
+            Direction next = pick(x, y);
+            if (next != null) {
+                // Follow the known corridor up to the next choice in one request
+                List<Direction> run = new ArrayList<>();
+                int cx = x, cy = y;
+                for (Direction d = next; d != null; d = corridor(cx, cy)) {
+                    run.add(d);
+                    cx += dx(d);
+                    cy += dy(d);
+                    map.visit(cx, cy, map.type(cx, cy));
+                }
+
+                moveSequenceResponse sresp = game.moveSequence(run);
+                if (sresp.getSteps() != run.size()) {
+                    return false;
+                }
+                for (Direction d : run) {
+                    path.push(d);
+                }
+                x = cx;
+                y = cy;
+                center = sresp.getView().getCenter();
+                if (center != ViewElement.EXIT && map.unknownNeighbors(x, y) > 0) {
+                    center = look(game, x, y);
+                }
+                continue;
+            }
+
+            // Walk back to the last field that still has an open, unvisited neighbour, in one request
+            List<Direction> back = new ArrayList<>();
+            while (!path.isEmpty()) {
+                Direction d = opposite(path.pop());
+                back.add(d);
+                x += dx(d);
+                y += dy(d);
+                if (candidates(x, y) != 0) {
+                    break;
+                }
+            }
+            if (back.isEmpty()) {
+                return false;
+            }
+            moveSequenceResponse sresp = game.moveSequence(back);
+            if (sresp.getSteps() != back.size()) {
+                return false;
+            }
+            center = sresp.getView().getCenter();
+        }
+        return true;
+    }
+
+    /**
+     * Lekéri a játékos környezetét, felveszi a térképre, és kitölti az így felismerhetővé vált zsákutcákat
+     * @return A játékos mezőjének típusa
+     */
+    protected ViewElement look(GameClient game, int x, int y) throws IOException {
+        lookAroundResponse laresp = game.lookAround(radius);
+        lookAroundResponse.View view = laresp.getView();
+        map.visit(x, y, view.getCenter());
+
+        int r = laresp.getRadius();
+        int side = 2 * r + 1;
+        if (r > 0 && laresp.getWindowCount() == side * side) {
+            for (int j = 0; j < side; j++) {
+                for (int i = 0; i < side; i++) {
+                    map.see(x - r + i, y - r + j, laresp.getWindow(j * side + i));
+                }
+            }
+        }
+        else {
+            r = 1;
+            for (Direction d : Direction.values()) {
+                map.see(x + dx(d), y + dy(d), neighbor(view, d));
+            }
+        }
+
+        // Fields just outside the window may have had their last unknown neighbour revealed too
+        for (int j = y - r - 1; j <= y + r + 1; j++) {
+            for (int i = x - r - 1; i <= x + r + 1; i++) {
+                work.add(ExplorationMap.key(i, j));
+            }
+        }
+        while (!work.isEmpty()) {
+            long k = work.poll();
+            int cx = ExplorationMap.keyX(k), cy = ExplorationMap.keyY(k);
+            if (!isDeadEnd(cx, cy)) {
+                continue;
+            }
+            map.fill(cx, cy);
+            for (Direction d : Direction.values()) {
+                work.add(ExplorationMap.key(cx + dx(d), cy + dy(d)));
+            }
+        }
+        return view.getCenter();
+    }
+
+    /**
+     * A kezdőpont és a kijárat sosem zsákutca, és az sem, amelynek van még ismeretlen szomszédja
+     */
+    private boolean isDeadEnd(int x, int y) {
+        if (!map.isPassable(x, y) || map.isFilled(x, y) || (x == 0 && y == 0)
+                || map.type(x, y) == ViewElement.EXIT || map.unknownNeighbors(x, y) > 0) {
+            return false;
+        }
+        int open = 0;
+        for (Direction d : Direction.values()) {
+            int nx = x + dx(d), ny = y + dy(d);
+            if (map.isPassable(nx, ny) && !map.isFilled(nx, ny)) {
+                open++;
+            }
+        }
+        return open <= 1;
+    }
+
+    /**
+     * @return A ki nem töltött, még be nem járt nyitott szomszédok irányainak maszkja, csak a kijáraté, ha szomszédos
+     */
+    private int candidates(int x, int y) {
+        int mask = 0;
+        for (Direction d : Direction.values()) {
+            int nx = x + dx(d), ny = y + dy(d);
+            if (map.type(nx, ny) == ViewElement.EXIT) {
+                return ExplorationMap.bit(d);
+            }
+            if (map.isPassable(nx, ny) && !map.isFilled(nx, ny) && !map.isVisited(nx, ny)) {
+                mask |= ExplorationMap.bit(d);
+            }
+        }
+        return mask;
+    }
+
+    private Direction pick(int x, int y) {
+        int mask = candidates(x, y);
+        return mask != 0 ? Direction.forNumber(Integer.numberOfTrailingZeros(randomBit(random, mask))) : null;
+    }
+
+    /**
+     * @return Az irány, amerre a folyosó folytatódik, vagy null, ha a mező nem teljesen ismert, a kijárat, vagy
+     * elágazás
+     */
+    private Direction corridor(int x, int y) {
+        if (map.type(x, y) == ViewElement.EXIT || map.unknownNeighbors(x, y) > 0) {
+            return null;
+        }
+        int mask = candidates(x, y);
+        return Integer.bitCount(mask) == 1 ? Direction.forNumber(Integer.numberOfTrailingZeros(mask)) : null;
+    }
+}
@@ -0,0 +1,116 @@
+package hu.ppke.itk.pakge2;
+
+import hu.ppke.itk.java.labyrinthv09.LabyrinthProtos.*;
+
+import java.io.IOException;
+import java.util.*;
+
+import static hu.ppke.itk.pakge2.SolverStrategy.*;
+
+/**
+ * Mélységi bejárás: minden mezőről egy még meg nem látogatott szomszédjára lép, ha nincs ilyen, egyetlen
+ * lépéssorozattal visszamegy az utolsó olyan mezőig, ahonnan még van kipróbálatlan irány. Ha a kijárat szomszédos,
+ * oda lép. Az irányokat rögzített sorrendben próbálja (észak, kelet, dél, nyugat), így két futás ugyanazt lépi.
+ */
+public class DfsStrategy implements SolverStrategy {
+
+    @Override
+    public boolean solve(GameClient game) throws IOException {
+        ExplorationMap map = new ExplorationMap();
+        Deque<Direction> path = new ArrayDeque<>();
+        int x = 0, y = 0;
+
+        lookAroundResponse.View view = game.lookAround(0).getView();
+        map.visit(x, y, view.getCenter());
+        map.setUntried(x, y, untried(view));
+
+        while (view.getCenter() != ViewElement.EXIT) {
+            Direction next = pick(map, x, y);
+            if (next != null) {
+                moveToResponse mresp = game.moveTo(next);
+                if (mresp.getStatus() != Status.SUCCESS) {
+                    return false;
+                }
+                path.push(next);
+                x += dx(next);
+                y += dy(next);
+                view = mresp.getView();
+                map.visit(x, y, view.getCenter());
+                map.setUntried(x, y, untried(view) & ~ExplorationMap.bit(opposite(next)));
+                continue;
+            }
+
+            // Walk back to the last field that still has an unvisited neighbour, in one request
+            List<Direction> back = new ArrayList<>();
+            while (!path.isEmpty()) {
+                Direction d = opposite(path.pop());
+                back.add(d);
+                x += dx(d);
+                y += dy(d);
+                if (hasUnvisited(map, x, y)) {
+                    break;
+                }
+            }
+            if (back.isEmpty()) {
+                return false;
+            }
+            moveSequenceResponse sresp = game.moveSequence(back);
+            if (sresp.getSteps() != back.size()) {
+                return false;
+            }
+            view = sresp.getView();
+        }
+        return true;
+    }
+
+    /**
+     * @param view Egy új mező környezete
+     * @return A kipróbálandó irányok maszkja: csak a kijárat, ha szomszédos, különben minden nyitott irány
+     */
+    protected static int untried(lookAroundResponse.View view) {
+        for (Direction d : Direction.values()) {
+            if (neighbor(view, d) == ViewElement.EXIT) {
+                return ExplorationMap.bit(d);
+            }
+        }
+        return ExplorationMap.openDirections(view);
+    }
+
+    /**
+     * Kivesz egy irányt a mező kipróbálatlan irányai közül, amerre még nem járt
+     * @return Az irány, vagy null, ha mindegyik szomszédot bejárta már
+     */
+    protected Direction pick(ExplorationMap map, int x, int y) {
+        int mask = map.untried(x, y);
+        while (mask != 0) {
+            int bit = choose(mask);
+            mask &= ~bit;
+
+            Direction d = Direction.forNumber(Integer.numberOfTrailingZeros(bit));
+            if (!map.isVisited(x + dx(d), y + dy(d))) {
+                map.setUntried(x, y, mask);
+                return d;
+            }
+        }
+        map.setUntried(x, y, 0);
+        return null;
+    }
+
+    /**
+     * @param mask Irányok nem üres maszkja
+     * @return A következőként kipróbált irány bitje
+     */
+    protected int choose(int mask) {
+        return Integer.lowestOneBit(mask);
+    }
+
+    private static boolean hasUnvisited(ExplorationMap map, int x, int y) {
+        for (int mask = map.untried(x, y); mask != 0; mask &= mask - 1) {
+            Direction d = Direction.forNumber(Integer.numberOfTrailingZeros(mask));
+            if (!map.isVisited(x + dx(d), y + dy(d))) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,199 @@
+package hu.ppke.itk.pakge2;
+
+import hu.ppke.itk.java.labyrinthv09.LabyrinthProtos.*;
+
+/**
+ * A megoldó ismeretei a labirintusról, a kezdőponthoz viszonyított koordinátákkal. Mezőnként egyetlen int értéket
+ * tárol egy {@link LongIntMap}-ben, a kulcs a két koordináta egy long értékbe csomagolva. Az érték alsó négy bitje
+ * azokat az irányokat jelöli, amelyek nyitottak és még nem próbálta ki ({@code 1 << Direction.getNumber()}), a
+ * következő bit azt, hogy járt-e már a mezőn, az azt követő azt, hogy ismeri-e a típusát, a hetedik azt, hogy
+ * zsákutcaként kitöltötte-e. A 8. bittől a mező típusa, a 12. bittől irányonként két biten az, hogy hányszor haladt
+ * át a mező és a szomszédja közötti átjárón. Egy mező akkor is ismert lehet, ha még nem járt rajta, például ha egy
+ * ablakban látta. A stratégiák ezen a közös térképen tartják nyilván, amit a labirintusról megtudtak.
+ */
+public class ExplorationMap {
+    public static final int ALL_DIRECTIONS = 0xF;
+    public static final int MAX_PASSES = 3;
+    private static final int VISITED = 1 << 4;
+    private static final int KNOWN = 1 << 5;
+    private static final int FILLED = 1 << 6;
+    private static final int TYPE_SHIFT = 8;
+    private static final int TYPE_MASK = 0xF;
+    private static final int PASS_SHIFT = 12;
+
+    private final LongIntMap cells;
+
+    public ExplorationMap() {
+        cells = new LongIntMap();
+    }
+
+    /**
+     * @param expected A várhatóan megismert mezők száma
+     */
+    public ExplorationMap(int expected) {
+        cells = new LongIntMap(expected);
+    }
+
+    /**
+     * Két koordinátát egyetlen long kulcsba csomagol
+     */
+    public static long key(int x, int y) {
+        return ((long) x << 32) | (y & 0xFFFFFFFFL);
+    }
+
+    public static int keyX(long key) {
+        return (int) (key >> 32);
+    }
+
+    public static int keyY(long key) {
+        return (int) key;
+    }
+
+    /**
+     * @param dir Egy irány
+     * @return Az irány bitje a maszkban
+     */
+    public static int bit(Direction dir) {
+        return 1 << dir.getNumber();
+    }
+
+    /**
+     * @param view Egy mező környezete
+     * @return A nem fal szomszédok irányainak maszkja
+     */
+    public static int openDirections(lookAroundResponse.View view) {
+        int mask = 0;
+        if (view.getNorth() != ViewElement.WALL) mask |= bit(Direction.NORTH);
+        if (view.getEast() != ViewElement.WALL) mask |= bit(Direction.EAST);
+        if (view.getSouth() != ViewElement.WALL) mask |= bit(Direction.SOUTH);
+        if (view.getWest() != ViewElement.WALL) mask |= bit(Direction.WEST);
+        return mask;
+    }
+
+    public boolean isVisited(int x, int y) {
+        return (cells.get(key(x, y), 0) & VISITED) != 0;
+    }
+
+    public boolean isKnown(int x, int y) {
+        return (cells.get(key(x, y), 0) & KNOWN) != 0;
+    }
+
+    /**
+     * Bejártnak jelöli a mezőt, és felveszi a típusát
+     */
+    public void visit(int x, int y, ViewElement type) {
+        long k = key(x, y);
+        int cell = cells.get(k, 0);
+        cells.put(k, cell & ~(TYPE_MASK << TYPE_SHIFT) | VISITED | KNOWN | type.getNumber() << TYPE_SHIFT);
+    }
+
+    /**
+     * Felveszi a mező típusát anélkül, hogy bejártnak jelölné
+     * @return true, ha eddig nem ismerte a mezőt
+     */
+    public boolean see(int x, int y, ViewElement type) {
+        long k = key(x, y);
+        int cell = cells.get(k, 0);
+        if ((cell & KNOWN) != 0) {
+            return false;
+        }
+        cells.put(k, cell | KNOWN | type.getNumber() << TYPE_SHIFT);
+        return true;
+    }
+
+    /**
+     * @return A mező típusa, vagy null, ha még nem ismeri
+     */
+    public ViewElement type(int x, int y) {
+        int cell = cells.get(key(x, y), 0);
+        return (cell & KNOWN) != 0 ? ViewElement.forNumber(cell >>> TYPE_SHIFT & TYPE_MASK) : null;
+    }
+
+    /**
+     * @return Ismert, nem fal mező-e
+     */
+    public boolean isPassable(int x, int y) {
+        ViewElement type = type(x, y);
+        return type != null && type != ViewElement.WALL;
+    }
+
+    /**
+     * @return Hány ismeretlen szomszédja van a mezőnek
+     */
+    public int unknownNeighbors(int x, int y) {
+        int n = 0;
+        for (Direction d : Direction.values()) {
+            if (!isKnown(x + SolverStrategy.dx(d), y + SolverStrategy.dy(d))) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * @return A mezőről még ki nem próbált nyitott irányok maszkja
+     */
+    public int untried(int x, int y) {
+        return cells.get(key(x, y), 0) & ALL_DIRECTIONS;
+    }
+
+    /**
+     * @param mask A mezőről még ki nem próbált nyitott irányok új maszkja
+     */
+    public void setUntried(int x, int y, int mask) {
+        long k = key(x, y);
+        cells.put(k, cells.get(k, 0) & ~ALL_DIRECTIONS | mask & ALL_DIRECTIONS);
+    }
+
+    public boolean isFilled(int x, int y) {
+        return (cells.get(key(x, y), 0) & FILLED) != 0;
+    }
+
+    /**
+     * Zsákutcaként kitöltöttnek jelöli a mezőt
+     */
+    public void fill(int x, int y) {
+        long k = key(x, y);
+        cells.put(k, cells.get(k, 0) | FILLED);
+    }
+
+    /**
+     * @return Hányszor haladt át a mező és a szomszédja közötti átjárón, legfeljebb {@link #MAX_PASSES}
+     */
+    public int passes(int x, int y, Direction dir) {
+        return cells.get(key(x, y), 0) >>> PASS_SHIFT + 2 * dir.getNumber() & MAX_PASSES;
+    }
+
+    /**
+     * Feljegyez egy áthaladást a mező és a szomszédja közötti átjárón, mindkét mezőnél
+     * @return Az áthaladások száma ezzel együtt, legfeljebb {@link #MAX_PASSES}
+     */
+    public int pass(int x, int y, Direction dir) {
+        addPass(x + SolverStrategy.dx(dir), y + SolverStrategy.dy(dir), SolverStrategy.opposite(dir));
+        return addPass(x, y, dir);
+    }
+
+    private int addPass(int x, int y, Direction dir) {
+        long k = key(x, y);
+        int cell = cells.get(k, 0);
+        int shift = PASS_SHIFT + 2 * dir.getNumber();
+        int n = Math.min((cell >>> shift & MAX_PASSES) + 1, MAX_PASSES);
+        cells.put(k, cell & ~(MAX_PASSES << shift) | n << shift);
+        return n;
+    }
+
+    /**
+     * Minden bejárt mezőre meghívja a látogatót, meghatározatlan sorrendben
+     */
+    public void forEach(Visitor visitor) {
+        cells.forEach((k, cell) -> {
+            if ((cell & VISITED) != 0) {
+                visitor.visit(keyX(k), keyY(k), ViewElement.forNumber(cell >>> TYPE_SHIFT & TYPE_MASK));
+            }
+        });
+    }
+
+    public interface Visitor {
+        void visit(int x, int y, ViewElement type);
+    }
+}
@@ -0,0 +1,273 @@
+package hu.ppke.itk.pakge2;
+
+import hu.ppke.itk.java.labyrinthv09.LabyrinthProtos.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static hu.ppke.itk.pakge2.SolverStrategy.*;
+
+/**
+ * Határ alapú bejárás. Minden megállónál egy ablakot kér a környezetéről, és a látott mezőket felveszi a térképre.
+ * A határ azokból az ismert úton elérhető, nem fal mezőkből áll, amelyeknek van még ismeretlen szomszédja. A határ
+ * mezőit egy verembe gyűjti abban a sorrendben, ahogy elérhetővé válnak, mindig a legutóbbi, legígéretesebb mezőt
+ * választja, az oda vezető legrövidebb ismert utat szélességi kereséssel határozza meg, és egyetlen
+ * lépéssorozatként küldi el. Az ablakban teljesen belátott zsákutcákba így be sem megy, és a visszalépés is egyetlen
+ * rövidített út a bejárt ösvény helyett. Ígéretesebbnek a kezdőponttól távolabbi mezőt tartja, a kijárat
+ * megpillantása után pedig a kijárathoz közelebbit; ha a kijárat elérhető ismert úton, egyenesen odamegy.
+ */
+public class FrontierStrategy implements SolverStrategy {
+    /**
+     * Az alapértelmezett ablak sugara, a szerver a saját korlátjáig kiszolgálja
+     */
+    public static final int DEFAULT_RADIUS = 4;
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    protected final int radius;
+
+    private ExplorationMap map;
+    private LongIntMap reached;
+    private long[] frontier = new long[256];
+    private int frontierSize;
+    private long[] queue = new long[256];
+    private final List<Long> seen = new ArrayList<>();
+    private final List<Long> candidates = new ArrayList<>();
+    private boolean exitSeen, exitReached;
+    private int exitX, exitY;
+
+    public FrontierStrategy() {
+        this(DEFAULT_RADIUS);
+    }
+
+    /**
+     * @param radius A megállónként kért ablak sugara, 0 esetén csak a szomszédokat nézi
+     */
+    public FrontierStrategy(int radius) {
+        this.radius = radius;
+    }
+
+    @Override
+    public boolean solve(GameClient game) throws IOException {
+        map = new ExplorationMap();
+        reached = new LongIntMap();
+        frontierSize = 0;
+        exitSeen = false;
+        exitReached = false;
+        int x = 0, y = 0;
+
+        ViewElement center = look(game, x, y);
+        while (center != ViewElement.EXIT) {
+            List<Direction> route = route(x, y);
+            if (route == null) {
+                return false;
+            }
+
+            moveSequenceResponse sresp = game.moveSequence(route);
+            if (sresp.getSteps() != route.size()) {
+                return false;
+            }
+            for (Direction d : route) {
+                x += dx(d);
+                y += dy(d);
+            }
+            center = sresp.getView().getCenter();
+            if (center != ViewElement.EXIT) {
+                center = look(game, x, y);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Lekéri a játékos környezetét, felveszi a térképre, és a veremre teszi az így elérhetővé vált határmezőket.
+     * Ha a szerver nem küld ablakot, a szomszédokkal is beéri.
+     * @return A játékos mezőjének típusa
+     */
+    protected ViewElement look(GameClient game, int x, int y) throws IOException {
+        lookAroundResponse laresp = game.lookAround(radius);
+        lookAroundResponse.View view = laresp.getView();
+        seen.clear();
+        see(x, y, view.getCenter());
+        map.visit(x, y, view.getCenter());
+
+        int r = laresp.getRadius();
+        int side = 2 * r + 1;
+        if (r > 0 && laresp.getWindowCount() == side * side) {
+            for (int j = 0; j < side; j++) {
+                for (int i = 0; i < side; i++) {
+                    see(x - r + i, y - r + j, laresp.getWindow(j * side + i));
+                }
+            }
+        }
+        else {
+            for (Direction d : DIRECTIONS) {
+                see(x + dx(d), y + dy(d), neighbor(view, d));
+            }
+        }
+
+        if (reached.size() == 0) {
+            reached.put(ExplorationMap.key(x, y), 1);
+            candidates.add(ExplorationMap.key(x, y));
+        }
+        flood();
+        return view.getCenter();
+    }
+
+    private void see(int x, int y, ViewElement type) {
+        if (!map.see(x, y, type) || type == ViewElement.WALL) {
+            return;
+        }
+        seen.add(ExplorationMap.key(x, y));
+        if (type == ViewElement.EXIT && !exitSeen) {
+            exitSeen = true;
+            exitX = x;
+            exitY = y;
+        }
+    }
+
+    /**
+     * Elérhetőnek jelöli az újonnan látott mezőkön át elérhetővé vált mezőket, a határra kerülőket pedig a veremre
+     * teszi úgy, hogy a legígéretesebb kerüljön felülre
+     */
+    private void flood() {
+        // Every passable field next to a reached one is reached, so new ones can only start from what was just seen
+        int tail = 0;
+        for (long k : seen) {
+            if (!reached.containsKey(k) && hasReachedNeighbor(k)) {
+                reached.put(k, 1);
+                tail = enqueue(tail, k);
+            }
+        }
+        for (int head = 0; head < tail; head++) {
+            long k = queue[head];
+            int cx = ExplorationMap.keyX(k), cy = ExplorationMap.keyY(k);
+            candidates.add(k);
+            if (exitSeen && cx == exitX && cy == exitY) {
+                exitReached = true;
+            }
+            for (Direction d : DIRECTIONS) {
+                long nk = ExplorationMap.key(cx + dx(d), cy + dy(d));
+                if (passable(nk) && !reached.containsKey(nk)) {
+                    reached.put(nk, 1);
+                    tail = enqueue(tail, nk);
+                }
+            }
+        }
+
+        candidates.sort((a, b) -> Integer.compare(promise(a), promise(b)));
+        for (long k : candidates) {
+            if (unknownNeighbors(k) > 0) {
+                if (frontierSize == frontier.length) {
+                    long[] grown = new long[frontier.length * 2];
+                    System.arraycopy(frontier, 0, grown, 0, frontierSize);
+                    frontier = grown;
+                }
+                frontier[frontierSize++] = k;
+            }
+        }
+        candidates.clear();
+    }
+
+    /**
+     * @return Minél nagyobb, annál ígéretesebb a mező
+     */
+    private int promise(long k) {
+        int x = ExplorationMap.keyX(k), y = ExplorationMap.keyY(k);
+        return exitSeen
+            ? -(Math.abs(exitX - x) + Math.abs(exitY - y))
+            : Math.abs(x) + Math.abs(y);
+    }
+
+    private int enqueue(int tail, long k) {
+        if (tail == queue.length) {
+            long[] grown = new long[queue.length * 2];
+            System.arraycopy(queue, 0, grown, 0, tail);
+            queue = grown;
+        }
+        queue[tail] = k;
+        return tail + 1;
+    }
+
+    private boolean passable(long k) {
+        return map.isPassable(ExplorationMap.keyX(k), ExplorationMap.keyY(k));
+    }
+
+    private boolean hasReachedNeighbor(long k) {
+        int x = ExplorationMap.keyX(k), y = ExplorationMap.keyY(k);
+        for (Direction d : DIRECTIONS) {
+            if (reached.containsKey(ExplorationMap.key(x + dx(d), y + dy(d)))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int unknownNeighbors(long k) {
+        return map.unknownNeighbors(ExplorationMap.keyX(k), ExplorationMap.keyY(k));
+    }
+
+    /**
+     * A következő cél: a kijárat, ha ismert úton elérhető, különben a verem tetején lévő, még mindig a határon álló
+     * mező
+     * @return A legrövidebb ismert út a célhoz, null, ha nincs több határmező
+     */
+    protected List<Direction> route(int x, int y) {
+        long start = ExplorationMap.key(x, y);
+        long target;
+        if (exitReached) {
+            target = ExplorationMap.key(exitX, exitY);
+        }
+        else {
+            do {
+                if (frontierSize == 0) {
+                    return null;
+                }
+                target = frontier[--frontierSize];
+            } while (target == start || unknownNeighbors(target) == 0);
+        }
+        return shortestPath(start, target);
+    }
+
+    /**
+     * Szélességi keresés az ismert, nem fal mezőkön
+     * @return A lépések sorrendben, vagy null, ha a cél nem érhető el ismert úton
+     */
+    protected List<Direction> shortestPath(long start, long target) {
+        // Direction number + 1 that led into each reached field, 0 for the start
+        LongIntMap from = new LongIntMap();
+        from.put(start, 0);
+        queue[0] = start;
+        int tail = 1;
+
+        for (int head = 0; head < tail; head++) {
+            long k = queue[head];
+            if (k == target) {
+                return path(from, k);
+            }
+            int cx = ExplorationMap.keyX(k), cy = ExplorationMap.keyY(k);
+            for (Direction d : DIRECTIONS) {
+                long nk = ExplorationMap.key(cx + dx(d), cy + dy(d));
+                if (passable(nk) && !from.containsKey(nk)) {
+                    from.put(nk, d.getNumber() + 1);
+                    tail = enqueue(tail, nk);
+                }
+            }
+        }
+        return null;
+    }
+
+    private static List<Direction> path(LongIntMap from, long target) {
+        List<Direction> route = new ArrayList<>();
+        long k = target;
+        for (int dir = from.get(k, 0); dir != 0; dir = from.get(k, 0)) {
+            Direction d = Direction.forNumber(dir - 1);
+            route.add(d);
+            k = ExplorationMap.key(ExplorationMap.keyX(k) - dx(d), ExplorationMap.keyY(k) - dy(d));
+        }
+        Collections.reverse(route);
+        return route;
+    }
+}
@@ -0,0 +1,358 @@
+package hu.ppke.itk.pakge2;
+
+import hu.ppke.itk.java.labyrinthv09.LabyrinthProtos.*;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ProtocolException;
+import java.util.List;
+
+/**
+ * Egy munkamenet a szerverrel grafikus felület nélkül. A protokoll kéréseit egy {@link LabyrinthConnection}-ön küldi,
+ * minden kérés idejét és eredményét jelenti a {@link Listener}-nek. Ha a szerver hibával válaszol, a metódusok
+ * {@link ProtocolException}-t dobnak; a falba ütköző lépés nem hiba, az a válasz {@code FAILURE} státuszából látszik.
+ * A játékos helyzetét a kezdőponthoz viszonyítva követi, a lépéseket a {@link GameObserver}-nek jelenti.
+ */
+public class GameClient {
+    /**
+     * Értesítést kap minden kérés befejeződéséről
+     */
+    public interface Listener {
+        /**
+         * @param type A kérés típusa
+         * @param nanos A kérés elküldésétől a válasz megérkezéséig eltelt idő
+         * @param status A válasz státusza
+         */
+        default void onResponse(Request.SelectorCase type, long nanos, Status status) {}
+
+        /**
+         * @param type A kérés típusa
+         * @param e A kapcsolat hibája, amely miatt nem érkezett válasz
+         */
+        default void onError(Request.SelectorCase type, IOException e) {}
+    }
+
+    /**
+     * Egy lépéssorozat kérés legfeljebb ennyi lépést visz, egy lépés a kérésben egy bájt
+     */
+    public static final int MAX_SEQUENCE_LENGTH = 32 * 1024;
+
+    protected final LabyrinthConnection connection;
+    protected final Listener listener;
+    protected GameObserver observer = GameObserver.NONE;
+    protected String sessionId;
+    protected String resumeToken;
+    protected String labyrinthId;
+    protected long moves;
+    protected quitGameResponse lastResult;
+    protected int x, y;
+    protected volatile boolean cancelled;
+
+    /**
+     * @param connection A kapcsolat a szerverhez
+     */
+    public GameClient(LabyrinthConnection connection) {
+        this(connection, new Listener() {});
+    }
+
+    /**
+     * @param connection A kapcsolat a szerverhez
+     * @param listener A kérések eredményeit kapja
+     */
+    public GameClient(LabyrinthConnection connection, Listener listener) {
+        this.connection = connection;
+        this.listener = listener;
+    }
+
+    /**
+     * @param observer A játék eseményeit kapja
+     */
+    public void setObserver(GameObserver observer) {
+        this.observer = observer;
+    }
+
+    /**
+     * Egy máshol már elindított játékot folytat, a játékos a kezdőponton áll
+     * @param sessionId A munkamenet azonosítója
+     * @param labyrinthId A játék labirintusának azonosítója
+     */
+    public void attach(String sessionId, String labyrinthId) {
+        this.sessionId = sessionId;
+        this.labyrinthId = labyrinthId;
+        x = 0;
+        y = 0;
+        cancelled = false;
+    }
+
+    /**
+     * Megszakítja a játékot: a további lépések {@link InterruptedIOException}-t dobnak, a játék befejezése és a
+     * munkamenet lezárása viszont még lehetséges
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    protected void checkCancelled() throws InterruptedIOException {
+        if (cancelled) {
+            throw new InterruptedIOException("Game cancelled");
+        }
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public String getLabyrinthId() {
+        return labyrinthId;
+    }
+
+    /**
+     * @return A munkamenet folytatásához szükséges titok a {@link #startSession} válaszából, vagy null
+     */
+    public String getResumeToken() {
+        return resumeToken;
+    }
+
+    /**
+     * @return A munkamenet során sikeresen megtett lépések száma
+     */
+    public long getMoves() {
+        return moves;
+    }
+
+    /**
+     * @return Az utolsó befejezett játék eredménye, benne a szerver által számolt lépésszámmal és hatékonysággal,
+     * vagy null, ha még nem ért véget játék
+     */
+    public quitGameResponse getLastResult() {
+        return lastResult;
+    }
+
+    /**
+     * A játékos helyzetét egy lépéssel továbbviszi és jelenti
+     */
+    protected void moved(Direction dir, ViewElement type) {
+        x += SolverStrategy.dx(dir);
+        y += SolverStrategy.dy(dir);
+        moves++;
+        observer.onMove(x, y, dir, type);
+    }
+
+    /**
+     * Elküldi a kérést és megvárja a választ, közben méri az időt
+     * @param req A kérés
+     * @return A válasz
+     * @throws IOException Ha a kapcsolat megszakadt
+     */
+    protected Response call(Request req) throws IOException {
+        long start = System.nanoTime();
+        try {
+            Response resp = connection.call(req);
+            listener.onResponse(req.getSelectorCase(), System.nanoTime() - start, statusOf(resp));
+            return resp;
+        } catch (IOException e) {
+            listener.onError(req.getSelectorCase(), e);
+            throw e;
+        }
+    }
+
+    /**
+     * @param resp Egy válasz
+     * @return A válaszban szereplő státusz
+     */
+    static Status statusOf(Response resp) {
+        switch (resp.getSelectorCase()) {
+            case STARTSESSIONRESPONSE: return resp.getStartSessionResponse().getStatus();
+            case STARTGAMERESPONSE: return resp.getStartGameResponse().getStatus();
+            case LOOKAROUNDRESPONSE: return resp.getLookAroundResponse().getStatus();
+            case MOVETORESPONSE: return resp.getMoveToResponse().getStatus();
+            case MOVESEQUENCERESPONSE: return resp.getMoveSequenceResponse().getStatus();
+            case QUITGAMERESPONSE: return resp.getQuitGameResponse().getStatus();
+            case CLOSESESSIONRESPONSE: return resp.getCloseSessionResponse().getStatus();
+            case RESUMESESSIONRESPONSE: return resp.getResumeSessionResponse().getStatus();
+            case LISTLABYRINTHSRESPONSE: return resp.getListLabyrinthsResponse().getStatus();
+            default: return Status.PROTOCOL_ERROR;
+        }
+    }
+
+    /**
+     * @param what A kérés neve a hibaüzenethez
+     * @param status A válasz státusza
+     * @param cause A szerver által küldött ok
+     * @return A hiba, amelyet a hívó dob
+     */
+    protected static ProtocolException error(String what, Status status, String cause) {
+        return new ProtocolException(what + " failed: " + status + (cause.isEmpty() ? "" : ", " + cause));
+    }
+
+    /**
+     * A játék közbeni kérések ellenőrzése, ezeknél a FAILURE a falba ütközést jelzi
+     * @throws ProtocolException Ha a státusz sem SUCCESS, sem FAILURE
+     */
+    protected static void check(String what, Status status, String cause) throws ProtocolException {
+        if (status != Status.SUCCESS && status != Status.FAILURE) {
+            throw error(what, status, cause);
+        }
+    }
+
+    /**
+     * Munkamenetet nyit a szerveren
+     * @param username A felhasználónév
+     * @return A munkamenet azonosítója
+     * @throws IOException Ha a kapcsolat megszakadt vagy a szerver elutasította
+     */
+    public String startSession(String username) throws IOException {
+        Response resp = call(Request.newBuilder()
+            .setStartSessionRequest(startSessionRequest.newBuilder().setUsername(username))
+            .build());
+        startSessionResponse sresp = resp.getStartSessionResponse();
+        if (sresp.getStatus() != Status.SUCCESS) {
+            throw error("startSession", sresp.getStatus(), sresp.getCause());
+        }
+        sessionId = sresp.getSessionId();
+        resumeToken = sresp.getResumeToken();
+        return sessionId;
+    }
+
+    /**
+     * @return A szerveren betöltött labirintus fájlok adatai, a nevük játék indításakor labirintus azonosítóként
+     * használható
+     * @throws IOException Ha a kapcsolat megszakadt vagy a szerver hibát jelzett
+     */
+    public List<labyrinthInfo> listLabyrinths() throws IOException {
+        listLabyrinthsResponse lresp = call(Request.newBuilder()
+            .setListLabyrinthsRequest(listLabyrinthsRequest.newBuilder().setSessionId(sessionId))
+            .build()).getListLabyrinthsResponse();
+        if (lresp.getStatus() != Status.SUCCESS) {
+            throw error("listLabyrinths", lresp.getStatus(), lresp.getCause());
+        }
+        return lresp.getLabyrinthsList();
+    }
+
+    /**
+     * Új játékot indít
+     * @param labyrinthId A labirintus fájl neve vagy a generálás magja, null esetén a szerver választ magot
+     * @return A játék labirintusának azonosítója
+     * @throws IOException Ha a kapcsolat megszakadt vagy a szerver elutasította
+     */
+    public String startGame(String labyrinthId) throws IOException {
+        startGameRequest.Builder builder = startGameRequest.newBuilder().setSessionId(sessionId);
+        if (labyrinthId != null) {
+            builder.setLabyrinthId(labyrinthId);
+        }
+        startGameResponse gresp = call(Request.newBuilder().setStartGameRequest(builder).build())
+            .getStartGameResponse();
+        if (gresp.getStatus() != Status.SUCCESS) {
+            throw error("startGame", gresp.getStatus(), gresp.getCause());
+        }
+        attach(sessionId, gresp.getLabyrinthId());
+        observer.onGameStarted(this.labyrinthId);
+        return this.labyrinthId;
+    }
+
+    /**
+     * @param radius Az ablak sugara, 0 esetén csak a szomszédok
+     * @return A játékos környezete
+     * @throws IOException Ha a kapcsolat megszakadt vagy a szerver hibát jelzett
+     */
+    public lookAroundResponse lookAround(int radius) throws IOException {
+        checkCancelled();
+        lookAroundResponse laresp = call(Request.newBuilder()
+            .setLookAroundRequest(lookAroundRequest.newBuilder()
+                .setSessionId(sessionId)
+                .setLabyrinthId(labyrinthId)
+                .setRadius(radius))
+            .build()).getLookAroundResponse();
+        check("lookAround", laresp.getStatus(), laresp.getCause());
+        return laresp;
+    }
+
+    /**
+     * Egyet lép, a válaszban az új mező környezetével
+     * @param dir Az irány
+     * @return A válasz, FAILURE státusszal, ha falba ütközött
+     * @throws IOException Ha a kapcsolat megszakadt vagy a szerver hibát jelzett
+     */
+    public moveToResponse moveTo(Direction dir) throws IOException {
+        checkCancelled();
+        moveToResponse mresp = call(Request.newBuilder()
+            .setMoveToRequest(moveToRequest.newBuilder()
+                .setSessionId(sessionId)
+                .setLabyrinthId(labyrinthId)
+                .setDirection(dir)
+                .setWithView(true))
+            .build()).getMoveToResponse();
+        check("moveTo", mresp.getStatus(), mresp.getCause());
+        if (mresp.getStatus() == Status.SUCCESS) {
+            moved(dir, mresp.hasView() ? mresp.getView().getCenter() : ViewElement.WAY);
+        }
+        return mresp;
+    }
+
+    /**
+     * Egyetlen kéréssel több lépést tesz meg. A szerver legfeljebb 64 KiB-os kéréseket fogad, ezért a
+     * {@link #MAX_SEQUENCE_LENGTH} lépésnél hosszabb sorozatot több kérésben küldi, és az első falba ütközésnél megáll.
+     * @param dirs A lépések iránya sorrendben
+     * @return A válasz a megtett lépések számával és a végső mező környezetével
+     * @throws IOException Ha a kapcsolat megszakadt vagy a szerver hibát jelzett
+     */
+    public moveSequenceResponse moveSequence(List<Direction> dirs) throws IOException {
+        moveSequenceResponse mresp = null;
+        int total = 0;
+        for (int from = 0; from == 0 || from < dirs.size(); from += MAX_SEQUENCE_LENGTH) {
+            List<Direction> chunk = dirs.subList(from, Math.min(from + MAX_SEQUENCE_LENGTH, dirs.size()));
+            checkCancelled();
+            mresp = call(Request.newBuilder()
+                .setMoveSequenceRequest(moveSequenceRequest.newBuilder()
+                    .setSessionId(sessionId)
+                    .setLabyrinthId(labyrinthId)
+                    .addAllDirections(chunk))
+                .build()).getMoveSequenceResponse();
+            check("moveSequence", mresp.getStatus(), mresp.getCause());
+            int steps = mresp.getSteps();
+            for (int i = 0; i < steps; i++) {
+                boolean last = i == steps - 1 && mresp.hasView();
+                moved(chunk.get(i), last ? mresp.getView().getCenter() : ViewElement.WAY);
+            }
+            total += steps;
+            if (steps < chunk.size()) {
+                break;
+            }
+        }
+        return total == mresp.getSteps() ? mresp : mresp.toBuilder().setSteps(total).build();
+    }
+
+    /**
+     * Befejezi a játékot
+     * @return Nyert-e a játékos
+     * @throws IOException Ha a kapcsolat megszakadt vagy a szerver hibát jelzett
+     */
+    public GameStatus quitGame() throws IOException {
+        quitGameResponse qresp = call(Request.newBuilder()
+            .setQuitGameRequest(quitGameRequest.newBuilder()
+                .setSessionId(sessionId)
+                .setLabyrinthId(labyrinthId))
+            .build()).getQuitGameResponse();
+        if (qresp.getStatus() != Status.SUCCESS) {
+            throw error("quitGame", qresp.getStatus(), qresp.getCause());
+        }
+        labyrinthId = null;
+        lastResult = qresp;
+        observer.onGameFinished(qresp.getGameStatus());
+        return qresp.getGameStatus();
+    }
+
+    /**
+     * Lezárja a munkamenetet
+     * @throws IOException Ha a kapcsolat megszakadt vagy a szerver hibát jelzett
+     */
+    public void closeSession() throws IOException {
+        closeSessionResponse cresp = call(Request.newBuilder()
+            .setCloseSessionRequest(closeSessionRequest.newBuilder().setSessionId(sessionId))
+            .build()).getCloseSessionResponse();
+        if (cresp.getStatus() != Status.SUCCESS) {
+            throw error("closeSession", cresp.getStatus(), cresp.getCause());
+        }
+        sessionId = null;
+    }
+}
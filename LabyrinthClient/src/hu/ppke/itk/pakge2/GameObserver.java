@@ -0,0 +1,30 @@
+package hu.ppke.itk.pakge2;
+
+import hu.ppke.itk.java.labyrinthv09.LabyrinthProtos.*;
+
+/**
+ * A játék eseményei, felülettől függetlenül. A {@link GameClient} a megoldó szálán hívja, ezért a megvalósításnak
+ * gyorsnak kell lennie, a felület frissítését pedig magának kell átadnia a megfelelő szálnak.
+ */
+public interface GameObserver {
+    GameObserver NONE = new GameObserver() {};
+
+    /**
+     * @param labyrinthId Az elindult játék labirintusának azonosítója
+     */
+    default void onGameStarted(String labyrinthId) {}
+
+    /**
+     * A játékos egy mezőt lépett
+     * @param x Az új mező szélességi koordinátája a kezdőponthoz viszonyítva
+     * @param y Az új mező hosszúsági koordinátája a kezdőponthoz viszonyítva
+     * @param dir A lépés iránya
+     * @param type Az új mező típusa, ha a szerver nem küldte el, WAY
+     */
+    default void onMove(int x, int y, Direction dir, ViewElement type) {}
+
+    /**
+     * @param status A befejezett játék eredménye
+     */
+    default void onGameFinished(GameStatus status) {}
+}
@@ -0,0 +1,181 @@
+package hu.ppke.itk.pakge2;
+
+import hu.ppke.itk.java.labyrinthv09.LabyrinthProtos.*;
+
+import java.io.*;
+import java.net.ProtocolException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * Kapcsolat a szerverhez, amelyen egyszerre több kérés is úton lehet. Minden kérés egyedi azonosítót kap, a szerver
+ * ezt visszaküldi a válaszban, így egy háttérszál a válaszokat a hozzájuk tartozó CompletableFuture-höz rendeli.
+ */
+public class LabyrinthConnection implements Closeable {
+    protected final Socket socket;
+    protected final InputStream input;
+    protected final OutputStream output;
+    protected final Map<Long, CompletableFuture<Response>> pending = new ConcurrentHashMap<>();
+    protected final Thread reader;
+    protected long nextId = 1;
+    protected volatile IOException failure;
+
+    /**
+     * Csatlakozik a szerverhez és elindítja a válaszokat olvasó szálat
+     * @param ip A szerver címe
+     * @param port A szerver portja
+     * @throws IOException Ha nem sikerült csatlakozni
+     */
+    public LabyrinthConnection(String ip, int port) throws IOException {
+        this(ip, port, 1);
+    }
+
+    /**
+     * Csatlakozik a szerverhez, a kérések azonosítóit a megadott értéktől kezdi, így egy megszakadt kapcsolat után
+     * az új kapcsolat azonosítói nem ütköznek a régiekkel
+     * @param ip A szerver címe
+     * @param port A szerver portja
+     * @param firstId Az első kérés azonosítója
+     * @throws IOException Ha nem sikerült csatlakozni
+     */
+    public LabyrinthConnection(String ip, int port, long firstId) throws IOException {
+        nextId = firstId;
+        socket = new Socket(ip, port);
+        socket.setTcpNoDelay(true);
+        input = new BufferedInputStream(socket.getInputStream());
+        output = new BufferedOutputStream(socket.getOutputStream());
+        reader = new Thread(this::readResponses, "labyrinth-reader");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    /**
+     * Elküld egy kérést, a válaszra nem vár
+     * @param req A kérés, azonosító nélkül
+     * @return A válasz, amikor megérkezik
+     */
+    public CompletableFuture<Response> send(Request req) {
+        return sendAll(List.of(req)).get(0);
+    }
+
+    /**
+     * Egyszerre elküld több kérést, a szerver ezeket sorban szolgálja ki
+     * @param reqs A kérések, azonosító nélkül
+     * @return A válaszok a kérések sorrendjében
+     */
+    public List<CompletableFuture<Response>> sendAll(List<Request> reqs) {
+        List<CompletableFuture<Response>> futures = new ArrayList<>(reqs.size());
+        synchronized (output) {
+            try {
+                for (Request req : reqs) {
+                    long id = nextId++;
+                    CompletableFuture<Response> future = new CompletableFuture<>();
+                    futures.add(future);
+                    pending.put(id, future);
+                    req.toBuilder().setRequestId(id).build().writeDelimitedTo(output);
+                }
+                output.flush();
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+        // The reader may have failed before the futures were registered
+        if (failure != null) {
+            fail(failure);
+        }
+        return futures;
+    }
+
+    /**
+     * Elküld egy kérést és megvárja a választ
+     * @param req A kérés
+     * @return A válasz
+     * @throws IOException Ha a kapcsolat megszakadt
+     */
+    public Response call(Request req) throws IOException {
+        try {
+            return send(req).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for response");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * @return Az utoljára elküldött kérés azonosítója
+     */
+    public long lastRequestId() {
+        synchronized (output) {
+            return nextId - 1;
+        }
+    }
+
+    /**
+     * A háttérszál ciklusa, mely a beérkező válaszokat a kérésükhöz rendeli
+     */
+    protected void readResponses() {
+        try {
+            Response resp;
+            while ((resp = Response.parseDelimitedFrom(input)) != null) {
+                if (!resp.hasRequestId()) {
+                    rejected(resp);
+                }
+                CompletableFuture<Response> future = pending.remove(resp.getRequestId());
+                if (future == null) {
+                    throw new IOException("Unexpected response id " + resp.getRequestId());
+                }
+                future.complete(resp);
+            }
+            fail(new EOFException("Connection closed by the server"));
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Azonosító nélküli válasz a kapcsolatnak szól, nem egy kérésnek, például ha a szerver betelt. Minden várakozó
+     * kérés ezt a választ kapja, hogy a hívó lássa a státuszt és az okot, a további kérések pedig hibával zárulnak.
+     * @param resp A szerver válasza
+     * @throws ProtocolException Mindig, ez zárja le a kapcsolatot
+     */
+    protected void rejected(Response resp) throws ProtocolException {
+        for (Long id : pending.keySet()) {
+            CompletableFuture<Response> future = pending.remove(id);
+            if (future != null) {
+                future.complete(resp);
+            }
+        }
+        String cause = resp.hasStartSessionResponse() ? resp.getStartSessionResponse().getCause() : "";
+        throw new ProtocolException("Connection rejected by the server" + (cause.isEmpty() ? "" : ": " + cause));
+    }
+
+    /**
+     * A még válaszra váró kéréseket hibával zárja le
+     * @param e A hiba oka
+     */
+    protected void fail(IOException e) {
+        failure = e;
+        for (Long id : pending.keySet()) {
+            CompletableFuture<Response> future = pending.remove(id);
+            if (future != null) {
+                future.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * Bontja a kapcsolatot, a válaszra váró kérések hibával zárulnak
+     */
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+}
@@ -1,11 +1,11 @@
 package hu.ppke.itk.pakge2;
 
 import hu.ppke.itk.java.labyrinthv09.LabyrinthProtos.*;
+import javafx.animation.AnimationTimer;
 import javafx.application.Platform;
 import javafx.scene.paint.Color;
 
 import java.io.*;
-import java.net.Socket;
 import java.util.*;
 
 /**
@@ -13,14 +13,20 @@ import java.util.*;
  */
 public class LabyrinthModell extends Thread{
     protected LabyrinthView labyrinthView;
-    protected Socket clientSocket;
-    protected InputStream input;
-    protected OutputStream output;
+    protected LabyrinthConnection connection;
     protected Status status;
     protected GameStatus gameStatus = GameStatus.LOST;
     protected String labyrinthId = "reverse100.txt", sessionId, username, ip, port;
+    // Proves to the server that a resumed session is ours, replaced on every resume
+    protected String resumeToken;
     protected boolean stop = false, connected = false, start = true;
 
+    /**
+     * Ennyiszer próbál újracsatlakozni megszakadt kapcsolat esetén, a próbálkozások között RECONNECT_DELAY ms-ot vár
+     */
+    protected static final int RECONNECT_ATTEMPTS = 5;
+    protected static final int RECONNECT_DELAY = 1000;
+
     /**
      * Belső osztály a labirintus mezőinek reprezentálására
      */
@@ -129,10 +135,15 @@ public class LabyrinthModell extends Thread{
         }
     }
     protected Field topLeft, topRight, bottomLeft, bottomRight, startField;
-    protected TreeMap<Field, LinkedList<Direction>> fields;
-    protected TreeSet<Field> allFields;
+    protected ExplorationMap allFields;
     protected Stack<Direction> path;
 
+    /**
+     * A bejárás stratégiája, alapértelmezetten a véletlenszerű mélységi bejárás
+     */
+    protected SolverStrategy strategy = new RandomDfsStrategy();
+    protected volatile GameClient game;
+
     /**
      * Beállítja az osztály mezőit, megpróbál csatlakozni a GUI felületen megadott szerverhez
      * @param labyrinthView Paraméterként megkapja az osztály a GUI-t megvalósíó osztály példányát
@@ -146,9 +157,7 @@ public class LabyrinthModell extends Thread{
         this.ip = ip;
         this.port = port;
         try {
-            clientSocket = new Socket(ip, Integer.parseInt(port));
-            input = clientSocket.getInputStream();
-            output = clientSocket.getOutputStream();
+            connection = new LabyrinthConnection(ip, Integer.parseInt(port));
             startSession();
             connected = true;
         } catch (Exception e) {
@@ -182,11 +191,69 @@ public class LabyrinthModell extends Thread{
     }
 
     /**
-     * A labirintusból kitaláló algoritmus egy gráfként fogja fel a labirintus mezőit és ezeken egy mélységi bejárást hajt végre
+     * A megoldó eseményeit gyűjti, és képkockánként legfeljebb egyszer frissíti belőlük a felületet. Így a megoldó
+     * hálózati sebességgel haladhat, nem vár a JavaFX szálra, és a felület sem kap lépésenként külön feladatot.
+     */
+    protected class ViewUpdater extends AnimationTimer implements GameObserver {
+        private long moves;
+        private int x, y;
+        private boolean dirty;
+
+        /**
+         * A megoldó szálán hívódik: eltárolja a mezőt a rajzoláshoz és a bejárt útvonalat, a felületet nem érinti
+         */
+        @Override
+        public void onMove(int x, int y, Direction dir, ViewElement type) {
+            if (!allFields.isVisited(x, y)) {
+                allFields.visit(x, y, type);
+            }
+            if (!path.empty() && dir == SolverStrategy.opposite(path.peek())) {
+                path.pop();
+            } else {
+                path.push(dir);
+            }
+            if(x <= topLeft.x && y <= topLeft.y){
+                topLeft = new Field(x, y, type);
+            }
+            if(x <= bottomLeft.x && y >= bottomLeft.y){
+                bottomLeft = new Field(x, y, type);
+            }
+            if(x >= topRight.x && y <= topRight.y){
+                topRight = new Field(x, y, type);
+            }
+            if(x >= bottomRight.x && y >= bottomRight.y){
+                bottomRight = new Field(x, y, type);
+            }
+            synchronized (this) {
+                this.x = x;
+                this.y = y;
+                moves++;
+                dirty = true;
+            }
+        }
+
+        /**
+         * A JavaFX szálon fut minden képkockánál, csak akkor frissít, ha azóta történt lépés
+         */
+        @Override
+        public void handle(long now) {
+            String state;
+            synchronized (this) {
+                if (!dirty) {
+                    return;
+                }
+                dirty = false;
+                state = "Running, " + moves + " moves, at " + x + " " + y;
+            }
+            labyrinthView.setGameStatus(state);
+        }
+    }
+
+    /**
+     * Végigjátssza a játékot a kiválasztott stratégiával, a felületet a {@link ViewUpdater} frissíti
      */
     public void solveLabyrinth(){
-        fields = new TreeMap<>();
-        allFields = new TreeSet<Field>();
+        allFields = new ExplorationMap();
         path = new Stack<>();
         Field actual = new Field(0, 0, ViewElement.START);
         startField = new Field(actual);
@@ -194,155 +261,112 @@ public class LabyrinthModell extends Thread{
         topRight = new Field(actual);
         bottomLeft = new Field(actual);
         bottomRight = new Field(actual);
-        allFields.add(new Field(actual));
-        while(!stop){
-            Field next;
-            Field finalActual = actual;
-            Platform.runLater(()->{
-                labyrinthView.setMessage("[INFO] Look around at " + finalActual.x.toString() + " " + finalActual.y.toString());
-            });
-            lookAroundResponse.View view = lookAround();
+        allFields.visit(actual.x, actual.y, actual.type);
 
-            if(!stop){
-                boolean exit;
-                if(path.empty()){
-                    exit = addDirectionsToField(actual,view, null);
-                }
-                else{
-                    exit = addDirectionsToField(actual,view,path.peek());
-                }
-                Integer d = getDirection(actual);
-                if(d != -1){
-                    path.push(Direction.forNumber(d));
-                    if(exit){
-                        next = new Field(actual.x,actual.y,ViewElement.EXIT, path.peek());
-                    }
-                    else {
-                        next = new Field(actual.x, actual.y, ViewElement.WAY, path.peek());
-                    }
-                    allFields.add(new Field(next));
-                    moveTo(Direction.forNumber(d));
-                    if(stop){
-                        break;
-                    }
-                    actual = next;
-                    if(actual.x <= topLeft.x && actual.y <= topLeft.y){
-                        topLeft = new Field(actual);
-                    }
-                    if(actual.x <= bottomLeft.x && actual.y >= bottomLeft.y){
-                        bottomLeft = new Field(actual);
-                    }
-                    if(actual.x >= topRight.x && actual.y <= topRight.y){
-                        topRight = new Field(actual);
-                    }
-                    if(actual.x >= bottomRight.x && actual.y >= bottomRight.y){
-                        bottomRight = new Field(actual);
-                    }
-                }
-                else{
-                    while(!(fields.containsKey(actual) && fields.get(actual).size() > 0) && !interrupted()){
-                        Direction dir = path.pop();
-                        dir = Direction.forNumber((dir.getNumber() + 2)%4);
-                        actual.move(dir);
-                        moveTo(dir);
-                        if(stop){
-                            break;
-                        }
-                    }
-                    if(stop){
-                        break;
-                    }
-                }
-            }
-            if(actual.type == ViewElement.EXIT){
-                stop = true;
+        // Requests go through call(), so a lost connection is resumed as before
+        game = new GameClient(connection) {
+            @Override
+            protected Response call(Request req) throws IOException {
+                return LabyrinthModell.this.call(req);
+            }
+        };
+        game.attach(sessionId, labyrinthId);
+        ViewUpdater updater = new ViewUpdater();
+        game.setObserver(updater);
+        if (stop) {
+            game.cancel();
+        }
+
+        Platform.runLater(updater::start);
+        try {
+            if(!strategy.solve(game) && !stop){
+                Platform.runLater(()->{
+                    labyrinthView.setMessage("[ERROR] No unexplored fields left");
+                });
             }
+        } catch (InterruptedIOException e) {
+            // Stopped from the GUI
+        } catch (IOException e) {
+            Platform.runLater(()->{
+                labyrinthView.setMessage("[ERROR] Error while moving in the labyrinth: " + e.getMessage());
+            });
         }
-        labyrinthView.setBeforeStart();
+        Platform.runLater(()->{
+            updater.stop();
+            updater.handle(0);
+            labyrinthView.setBeforeStart();
+        });
         quitGame();
     }
 
+
     /**
-     * Egy adott mezőhöz hozzáadja az onnan lehetséges további irányokat, tehát amerre nincsen fal
-     * @param field A kérdéses mező
-     * @param view A mező környezete önmagát is beleértve
-     * @param prevdir Az irány, amelyből érkeztünk
-     * @return Azt jelzi, hogy valamely mező a környzetből a kiutat jelenti-e true - kiút, false - nem kiút
+     * Elküld egy kérést és megvárja a választ. Ha közben megszakad a kapcsolat, újracsatlakozik és folytatja a
+     * munkamenetet; ha a szerver a kérést még a megszakadás előtt végrehajtotta, annak válaszát adja vissza, különben
+     * újra elküldi a kérést
+     * @param req A kérés
+     * @return A válasz
+     * @throws IOException Ha az újracsatlakozás sem sikerült
      */
-    public boolean addDirectionsToField(Field field, lookAroundResponse.View view, Direction prevdir){
-        if(fields.containsKey(field)) {
-            return false;
-        }
-        if(prevdir != null){
-            prevdir = Direction.valueOf((prevdir.getNumber() + 2 ) % 4);
-        }
-        if(view.getEast() != ViewElement.WALL && prevdir != Direction.EAST){
-            if (!fields.containsKey(field)) {
-                fields.put(field, new LinkedList<>());
-            }
-            fields.get(field).add(Direction.EAST);
-            if(view.getEast() == ViewElement.EXIT){
-                return true;
-            }
-        }
-        if(view.getWest() != ViewElement.WALL && prevdir != Direction.WEST){
-            if (!fields.containsKey(field)) {
-                fields.put(field, new LinkedList<>());
-            }
-            fields.get(field).add(Direction.WEST);
-            if(view.getWest() == ViewElement.EXIT){
-                return true;
-            }
-        }
-        if(view.getNorth() != ViewElement.WALL && prevdir != Direction.NORTH){
-            if (!fields.containsKey(field)) {
-                fields.put(field, new LinkedList<>());
-            }
-            fields.get(field).add(Direction.NORTH);
-            if(view.getNorth() == ViewElement.EXIT){
-                return true;
-            }
-        }
-        if(view.getSouth() != ViewElement.WALL && prevdir != Direction.SOUTH){
-            if (!fields.containsKey(field)) {
-                fields.put(field, new LinkedList<>());
+    protected Response call(Request req) throws IOException {
+        try {
+            return connection.call(req);
+        } catch (IOException e) {
+            if (sessionId == null || !connected || req.hasCloseSessionRequest()) {
+                throw e;
             }
-            fields.get(field).add(Direction.SOUTH);
-            if(view.getSouth() == ViewElement.EXIT){
-                return true;
+            long failedId = connection.lastRequestId();
+            resumeSessionResponse resumed = reconnect(failedId + 1);
+            if (resumed.hasLastResponse() && resumed.getLastResponse().getRequestId() == failedId) {
+                return resumed.getLastResponse();
             }
+            return connection.call(req);
         }
-        return false;
     }
 
     /**
-     * Az adott mező nem fal és még korábban meg nem látogatott szomszédai közül d vissza egyet véletlenszerű
-     * en
-     * @param field A mező melyből az irány kell
-     * @return Egy irány: EAST, WEST, NORTH, SOUTH
+     * Új kapcsolatot nyit a szerverhez és folytatja rajta a munkamenetet
+     * @param firstId Az új kapcsolaton küldött első kérés azonosítója
+     * @return A szerver válasza a folytatásra
+     * @throws IOException Ha egyik próbálkozás sem sikerült
      */
-    public Integer getDirection(Field field){
-        Random rd = new Random();
-        if(!fields.containsKey(field) || fields.get(field).size() == 0){
-            return -1;
-        }
-        int random = rd.nextInt(fields.get(field).size());
-        Field next = new Field(field.x, field.y, ViewElement.WAY, fields.get(field).get(random));
-        while(allFields.contains(next)){
-            fields.get(field).remove(random);
-            if(fields.get(field).isEmpty()){
-                fields.remove(field);
-                return -1;
-            }
-            random = rd.nextInt(fields.get(field).size());
-            next = new Field(field.x, field.y, ViewElement.WAY, fields.get(field).get(random));
-        }
-        Integer res = fields.get(field).get(random).getNumber();
-        fields.get(field).remove((int) random);
-        if(fields.get(field).size() == 0){
-            fields.remove(field);
+    protected resumeSessionResponse reconnect(long firstId) throws IOException {
+        IOException failure = null;
+        for (int attempt = 1; attempt <= RECONNECT_ATTEMPTS; attempt++) {
+            int finalAttempt = attempt;
+            Platform.runLater(()->{
+                labyrinthView.setMessage("[INFO] Connection lost, reconnecting (" + finalAttempt + ")");
+            });
+            resumeSessionResponse resumed;
+            try {
+                connection.close();
+                connection = new LabyrinthConnection(ip, Integer.parseInt(port), firstId);
+                Request req = Request.newBuilder()
+                    .setResumeSessionRequest(resumeSessionRequest.newBuilder()
+                        .setSessionId(sessionId)
+                        .setResumeToken(resumeToken))
+                    .build();
+                resumed = connection.call(req).getResumeSessionResponse();
+            } catch (IOException e) {
+                failure = e;
+                try {
+                    Thread.sleep(RECONNECT_DELAY);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                continue;
+            }
+            if (resumed.getStatus() != Status.SUCCESS) {
+                throw new IOException("Session could not be resumed: " + resumed.getCause());
+            }
+            resumeToken = resumed.getResumeToken();
+            Platform.runLater(()->{
+                labyrinthView.setMessage("[INFO] Session resumed, id = " + sessionId);
+            });
+            return resumed;
         }
-        return res;
+        throw failure != null ? failure : new IOException("Reconnect interrupted");
     }
 
     /**
@@ -353,12 +377,11 @@ public class LabyrinthModell extends Thread{
             startSessionRequest.Builder builder = startSessionRequest.newBuilder();
             builder.setUsername(username);
             Request req = Request.newBuilder().setStartSessionRequest(builder).build();
-                req.writeDelimitedTo(output);
-            output.flush();
-            Response resp = Response.parseDelimitedFrom(input);
+            Response resp = call(req);
             if(resp.hasStartSessionResponse()){
                 startSessionResponse sresp = resp.getStartSessionResponse();
                 sessionId = sresp.getSessionId();
+                resumeToken = sresp.getResumeToken();
                 status = sresp.getStatus();
                 if(status == Status.SUCCESS){
                     Platform.runLater(()->{
@@ -398,9 +421,7 @@ public class LabyrinthModell extends Thread{
             }
             builder.setSessionId(sessionId);
             Request req = Request.newBuilder().setStartGameRequest(builder).build();
-            req.writeDelimitedTo(output);
-            output.flush();
-            Response resp = Response.parseDelimitedFrom(input);
+            Response resp = call(req);
             if (resp.hasStartGameResponse()) {
                 startGameResponse sresp = resp.getStartGameResponse();
                 labyrinthId = sresp.getLabyrinthId();
@@ -428,80 +449,6 @@ public class LabyrinthModell extends Thread{
         }
     }
 
-    /**
-     * Az aktuális mező (melyet alapvetően a szerver tárol) környezetét kéri le
-     * @return A paraméterként kapott mező környezete
-     */
-    public lookAroundResponse.View lookAround(){
-        try {
-            lookAroundRequest.Builder builder = lookAroundRequest.newBuilder();
-            builder.setLabyrinthId(labyrinthId);
-            builder.setSessionId(sessionId);
-            Request req = Request.newBuilder().setLookAroundRequest(builder).build();
-            req.writeDelimitedTo(output);
-            output.flush();
-            Response resp = Response.parseDelimitedFrom(input);
-            if (resp.hasLookAroundResponse()) {
-                lookAroundResponse laresp = resp.getLookAroundResponse();
-                status = laresp.getStatus();
-                if (status != Status.SUCCESS) {
-                    Platform.runLater(() -> {
-                        labyrinthView.setMessage("[ERROR] Error occured while looking around");
-                        labyrinthView.setMessage("[ERROR] Error message: " + status);
-                        labyrinthView.setBeforeStart();
-                    });
-                    stop = true;
-                    return null;
-                }
-                return laresp.getView();
-            }
-        } catch (Exception e) {
-            Platform.runLater(()->{
-                labyrinthView.setMessage("[ERROR] Unknown error during looking around");
-            });
-        }
-        stop = true;
-        return null;
-    }
-
-    /**
-     * Az aktuális mezőről elmozdul a megadott irányba
-     * @param dir Az elmozdulás iránya
-     */
-    public void moveTo(Direction dir){
-        try {
-            moveToRequest.Builder builder = moveToRequest.newBuilder();
-            builder.setLabyrinthId(labyrinthId);
-            builder.setSessionId(sessionId);
-            builder.setDirection(dir);
-            Request req = Request.newBuilder().setMoveToRequest(builder).build();
-            req.writeDelimitedTo(output);
-            output.flush();
-            Response resp = Response.parseDelimitedFrom(input);
-            if (resp.hasMoveToResponse()) {
-                moveToResponse mresp = resp.getMoveToResponse();
-                status = mresp.getStatus();
-            }
-            if (status != Status.SUCCESS) {
-                Platform.runLater(() -> {
-                    labyrinthView.setMessage("[ERROR] Error while moving in the labyrinth");
-                    labyrinthView.setMessage("[ERROR] Error message: " + status);
-                    labyrinthView.setBeforeStart();
-                });
-                stop = true;
-            }
-            else{
-                Platform.runLater(()->{
-                    labyrinthView.setMessage("[INFO] Moving to " + dir);
-                });
-            }
-        } catch (Exception e) {
-            Platform.runLater(()->{
-                labyrinthView.setMessage("[ERROR] Unknown error during moving in the labyrinth");
-            });
-        }
-    }
-
     /**
      * A játék befejezése, mely indikálja, hogy a GUI-n megjelenjen, mi lett az eredmény
      */
@@ -512,9 +459,7 @@ public class LabyrinthModell extends Thread{
             builder.setLabyrinthId(labyrinthId);
             builder.setSessionId(sessionId);
             Request req = Request.newBuilder().setQuitGameRequest(builder).build();
-                req.writeDelimitedTo(output);
-            output.flush();
-            Response resp = Response.parseDelimitedFrom(input);
+            Response resp = call(req);
             if(resp.hasQuitGameResponse()){
                 quitGameResponse qresp = resp.getQuitGameResponse();
                 status = qresp.getStatus();
@@ -550,9 +495,7 @@ public class LabyrinthModell extends Thread{
             closeSessionRequest.Builder builder = closeSessionRequest.newBuilder();
             builder.setSessionId(sessionId);
             Request req = Request.newBuilder().setCloseSessionRequest(builder).build();
-            req.writeDelimitedTo(output);
-            output.flush();
-            Response resp = Response.parseDelimitedFrom(input);
+            Response resp = call(req);
             if (resp.hasCloseSessionResponse()) {
                 closeSessionResponse sresp = resp.getCloseSessionResponse();
                 status = sresp.getStatus();
@@ -586,6 +529,10 @@ public class LabyrinthModell extends Thread{
      */
     public void disableStop(){
         stop = true;
+        GameClient game = this.game;
+        if (game != null) {
+            game.cancel();
+        }
     }
 
     /**
@@ -602,6 +549,14 @@ public class LabyrinthModell extends Thread{
         });
     }
 
+    /**
+     * A következő játéktól használt bejárási stratégia beállítása
+     * @param strategy Az új stratégia
+     */
+    public void setStrategy(SolverStrategy strategy){
+        this.strategy = strategy;
+    }
+
     /**
      * Labirintus id beállítása a paraméterként kapott String alapján
      * @param labyrinthId Az új labyrinth ID
@@ -654,20 +609,20 @@ public class LabyrinthModell extends Thread{
         Integer finalMinx = minx;
         Integer finalMiny = miny;
         Platform.runLater(()->{
-            for(Field field : allFields){
-                int x = (int) ((field.x - finalMinx) * a);
-                int y = (int) ((field.y - finalMiny) * b);
+            allFields.forEach((fx, fy, type) -> {
+                int x = (int) ((fx - finalMinx) * a);
+                int y = (int) ((fy - finalMiny) * b);
                 labyrinthView.gc.setFill(Color.BLACK);
                 labyrinthView.gc.fillRect(x, y, a, b);
                 labyrinthView.gc.setFill(Color.WHITE);
-                if(field.type == ViewElement.START){
+                if(type == ViewElement.START){
                     labyrinthView.gc.setFill(Color.RED);
                 }
-                if(field.type == ViewElement.EXIT){
+                if(type == ViewElement.EXIT){
                     labyrinthView.gc.setFill(Color.GREEN);
                 }
                 labyrinthView.gc.fillRect(x + 0.1*(double) a, y + 0.1 * (double) b, a * 0.8, b * 0.8);
-            }
+            });
             Field field = new Field(startField);
             for(Direction dir : path){
                 int x = (int) ((field.x - finalMinx) * a);
@@ -12,6 +12,8 @@ import javafx.scene.layout.VBox;
 import javafx.scene.paint.Color;
 import javafx.scene.text.Font;
 
+import java.util.Random;
+
 /**
  * A labirintus grafikus kezelői felületét leíró osztály
  */
@@ -19,6 +21,7 @@ public class LabyrinthView {
     protected VBox root;
     protected BorderPane panel;
     protected TextField username_tf, ip_tf, port_tf, labyrinthId_tf;
+    protected ChoiceBox<String> strategy_cb;
     protected String username = "pakge", ip = "localhost", port = "6900", labyrinthId = null;
     protected Canvas cv;
     protected GraphicsContext gc;
@@ -67,6 +70,8 @@ public class LabyrinthView {
         game_statusl.setFont(f1);
         Label labyrinthIdl = new Label("Labyrinth ID: ");
         labyrinthIdl.setFont(f1);
+        Label strategyl = new Label("  Strategy: ");
+        strategyl.setFont(f1);
         connectionStatus = new Label("Inactive");
         gameStatus = new Label("Not started");
         connectionStatus.setPadding(new Insets(10));
@@ -83,6 +88,11 @@ public class LabyrinthView {
         port_tf.setPromptText("6900");
         labyrinthId_tf.setPromptText("Null");
 
+        //Solver strategy selector
+        strategy_cb = new ChoiceBox<>();
+        strategy_cb.getItems().addAll(Strategies.names());
+        strategy_cb.setValue(Strategies.DEFAULT);
+
         //Connect, Disconnect Buttons
         connect_btn = new Button("Connect");
         disconnect_btn = new Button("Disconnect");
@@ -123,7 +133,7 @@ public class LabyrinthView {
         hb.setAlignment(Pos.CENTER);
         HBox hb1 = new HBox();
         hb1.setAlignment(Pos.CENTER);
-        hb1.getChildren().addAll(labyrinthIdl, labyrinthId_tf);
+        hb1.getChildren().addAll(labyrinthIdl, labyrinthId_tf, strategyl, strategy_cb);
         connect_btn.setMaxHeight(Double.MAX_VALUE);
         top.getChildren().add(l);
         top.getChildren().add(hb);
@@ -158,6 +168,7 @@ public class LabyrinthView {
         start_btn.setDisable(true);
         stop_btn.setDisable(true);
         labyrinthId_tf.setDisable(true);
+        strategy_cb.setDisable(true);
 
         //Set actions
         connect_btn.setOnAction(actionEvent -> {connect();});
@@ -176,6 +187,7 @@ public class LabyrinthView {
         stop_btn.setDisable(true);
         disconnect_btn.setDisable(true);
         labyrinthId_tf.setDisable(true);
+        strategy_cb.setDisable(true);
         ip_tf.setDisable(false);
         port_tf.setDisable(false);
         username_tf.setDisable(false);
@@ -190,6 +202,7 @@ public class LabyrinthView {
         stop_btn.setDisable(true);
         disconnect_btn.setDisable(false);
         labyrinthId_tf.setDisable(false);
+        strategy_cb.setDisable(false);
         ip_tf.setDisable(true);
         port_tf.setDisable(true);
         username_tf.setDisable(true);
@@ -236,6 +249,7 @@ public class LabyrinthView {
             labyrinthId = null;
         }
         labyrinthModell.setLabyrinthId(labyrinthId);
+        labyrinthModell.setStrategy(Strategies.create(strategy_cb.getValue(), new Random()));
         if(labyrinthModell.isAlive()){
             labyrinthModell.enableStart();
         }
@@ -247,6 +261,7 @@ public class LabyrinthView {
         stop_btn.setDisable(false);
         disconnect_btn.setDisable(false);
         labyrinthId_tf.setDisable(true);
+        strategy_cb.setDisable(true);
     }
 
     /**
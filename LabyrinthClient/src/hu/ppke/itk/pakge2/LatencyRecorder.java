@@ -0,0 +1,91 @@
+package hu.ppke.itk.pakge2;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Zármentes hisztogram nanoszekundumos időtartamokhoz. Minden kettőhatvány tartományt 8 egyforma részre oszt, így
+ * a kvantilisek legfeljebb 12,5%-kal becsülnek felfelé, akármekkorák is az értékek, a memória pedig nem nő a
+ * rögzített értékek számával.
+ */
+public class LatencyRecorder {
+    private static final int SUB_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    static int bucket(long value) {
+        if (value < SUB_BUCKETS) return (int) Math.max(value, 0);
+
+        int exp = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exp - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exp - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) return bucket;
+
+        int exp = bucket / SUB_BUCKETS + SUB_BITS - 1;
+        long sub = bucket % SUB_BUCKETS;
+        long width = 1L << (exp - SUB_BITS);
+        return ((SUB_BUCKETS + sub) << (exp - SUB_BITS)) + width - 1;
+    }
+
+    public void record(long nanos) {
+        counts.incrementAndGet(bucket(nanos));
+        count.increment();
+        max.accumulate(nanos);
+    }
+
+    /**
+     * Hozzáadja egy másik hisztogram értékeit ehhez
+     */
+    public void add(LatencyRecorder other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            long n = other.counts.get(i);
+            if (n != 0) {
+                counts.addAndGet(i, n);
+            }
+        }
+        count.add(other.count());
+        max.accumulate(other.max());
+    }
+
+    public long count() {
+        return count.sum();
+    }
+
+    public long max() {
+        return max.get();
+    }
+
+    /**
+     * @param quantiles Növekvő sorrendben, 0 és 1 között
+     * @return A kvantilisek felső becslése nanoszekundumban, üres hisztogramra 0
+     */
+    public long[] quantiles(double... quantiles) {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+
+        long[] result = new long[quantiles.length];
+        if (total == 0) return result;
+
+        long seen = 0;
+        int q = 0;
+        for (int i = 0; i < BUCKETS && q < quantiles.length; i++) {
+            seen += snapshot[i];
+            while (q < quantiles.length && seen >= Math.ceil(quantiles[q] * total)) {
+                result[q++] = Math.min(upperBound(i), max());
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,356 @@
+package hu.ppke.itk.pakge2;
+
+import hu.ppke.itk.java.labyrinthv09.LabyrinthProtos.*;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.ProtocolException;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Grafikus felület nélküli terhelésgenerátor. Egyszerre sok munkamenetet nyit, mindegyikben játékokat játszik végig
+ * a választott stratégiával, a végén pedig kiírja az áteresztőképességet, a kérések késleltetésének kvantiliseit és
+ * a hibák arányát. Minden munkamenet saját kapcsolaton és szálon fut. Több stratégia esetén a munkamenetek felváltva
+ * kapják őket, és az összesítés stratégiánként is megjelenik. Minden játék véletlenszám-generátora a magból, a
+ * munkamenet és a játék sorszámából készül, így azonos maggal és labirintussal a játékok megismételhetők.
+ */
+public class LoadGenerator implements GameClient.Listener {
+    static final String USAGE = "LoadGenerator <ip> <port> [--sessions=<count>] [--games=<count>]"
+        + " [--duration=<seconds>] [--labyrinth=<id>] [--strategy=<name>[,<name>...]] [--seed=<number>] [--list]";
+
+    // Thousands of session threads mostly wait on the network, a small stack is plenty
+    static final long THREAD_STACK_SIZE = 256 * 1024;
+
+    private static final double[] QUANTILES = { 0.5, 0.9, 0.99, 0.999 };
+    private static final Request.SelectorCase[] TYPES = Request.SelectorCase.values();
+
+    protected final String ip;
+    protected final int port;
+    protected int sessions = 1;
+    protected long games = -1;
+    protected long durationNanos = 0;
+    protected String labyrinthId;
+    protected List<String> strategies = List.of(Strategies.DEFAULT);
+    protected long seed = new Random().nextLong();
+
+    private final LatencyRecorder[] latency = new LatencyRecorder[TYPES.length];
+    private final LongAdder[] errors = new LongAdder[TYPES.length];
+    private Results[] results;
+    private final LongAdder failedSessions = new LongAdder();
+    private final LongAdder connectionErrors = new LongAdder();
+    private volatile String firstError;
+
+    /**
+     * Egy stratégia játékainak eredménye
+     */
+    static class Results {
+        final LatencyRecorder solveTime = new LatencyRecorder();
+        final LongAdder won = new LongAdder();
+        final LongAdder lost = new LongAdder();
+        final LongAdder moves = new LongAdder();
+        // Sum of the server's optimal / moves ratio over the won games it scored
+        final DoubleAdder efficiency = new DoubleAdder();
+        final LongAdder scored = new LongAdder();
+
+        double meanEfficiency() {
+            long n = scored.sum();
+            return n > 0 ? efficiency.sum() / n : Double.NaN;
+        }
+    }
+
+    /**
+     * @param ip A szerver címe
+     * @param port A szerver portja
+     */
+    public LoadGenerator(String ip, int port) {
+        this.ip = ip;
+        this.port = port;
+        for (Request.SelectorCase type : TYPES) {
+            latency[type.ordinal()] = new LatencyRecorder();
+            errors[type.ordinal()] = new LongAdder();
+        }
+    }
+
+    @Override
+    public void onResponse(Request.SelectorCase type, long nanos, Status status) {
+        latency[type.ordinal()].record(nanos);
+        if (status != Status.SUCCESS && status != Status.FAILURE) {
+            errors[type.ordinal()].increment();
+        }
+    }
+
+    @Override
+    public void onError(Request.SelectorCase type, IOException e) {
+        errors[type.ordinal()].increment();
+        connectionErrors.increment();
+    }
+
+    /**
+     * Elindítja a munkameneteket, megvárja, amíg mindegyik végez, majd kiírja az eredményt
+     * @param out Ide kerül az összesítés
+     * @throws InterruptedException Ha várakozás közben megszakították
+     */
+    public void run(PrintStream out) throws InterruptedException {
+        long perSession = games >= 0 ? games : durationNanos > 0 ? Long.MAX_VALUE : 1;
+        results = new Results[strategies.size()];
+        for (int i = 0; i < results.length; i++) {
+            results[i] = new Results();
+        }
+        CountDownLatch ready = new CountDownLatch(sessions);
+        CountDownLatch go = new CountDownLatch(1);
+        long[] deadline = new long[1];
+
+        List<Thread> threads = new ArrayList<>(sessions);
+        for (int i = 0; i < sessions; i++) {
+            int index = i;
+            Thread t = new Thread(null, () -> runSession(index, perSession, ready, go, deadline),
+                "load-" + i, THREAD_STACK_SIZE);
+            threads.add(t);
+            t.start();
+        }
+
+        // Every session is connected before the clock starts
+        ready.await();
+        long start = System.nanoTime();
+        deadline[0] = durationNanos > 0 ? start + durationNanos : Long.MAX_VALUE;
+        go.countDown();
+
+        for (Thread t : threads) {
+            t.join();
+        }
+        report(out, System.nanoTime() - start);
+    }
+
+    /**
+     * Egy munkamenet: csatlakozik, majd játékokat játszik, amíg el nem éri a játékok számát vagy az időkorlátot
+     */
+    protected void runSession(int index, long perSession, CountDownLatch ready, CountDownLatch go, long[] deadline) {
+        LabyrinthConnection connection = null;
+        try {
+            try {
+                connection = new LabyrinthConnection(ip, port);
+            } finally {
+                ready.countDown();
+            }
+            go.await();
+
+            GameClient game = new GameClient(connection, this);
+            game.startSession("load-" + index);
+
+            String strategy = strategies.get(index % strategies.size());
+            Results result = results[index % strategies.size()];
+            for (long g = 0; g < perSession && System.nanoTime() < deadline[0]; g++) {
+                long before = game.getMoves();
+                long start = System.nanoTime();
+
+                game.startGame(labyrinthId);
+                Strategies.create(strategy, new Random(gameSeed(index, g))).solve(game);
+                GameStatus status = game.quitGame();
+
+                result.solveTime.record(System.nanoTime() - start);
+                result.moves.add(game.getMoves() - before);
+                (status == GameStatus.WON ? result.won : result.lost).increment();
+                if (game.getLastResult().hasEfficiency()) {
+                    result.efficiency.add(game.getLastResult().getEfficiency());
+                    result.scored.increment();
+                }
+            }
+            game.closeSession();
+        } catch (IOException e) {
+            failedSessions.increment();
+            if (firstError == null) {
+                firstError = e instanceof ProtocolException ? e.getMessage() : e.toString();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (connection != null) {
+                try {
+                    connection.close();
+                } catch (IOException e) {
+                    // Nothing left to do with a failed connection
+                }
+            }
+        }
+    }
+
+    /**
+     * @return Egy játék véletlenszám-generátorának magja
+     */
+    long gameSeed(int session, long game) {
+        return seed + session * 0x9E3779B97F4A7C15L + game * 0xC2B2AE3D27D4EB4FL;
+    }
+
+    /**
+     * Kiírja az összesítést
+     * @param out A kimenet
+     * @param elapsed A mérés ideje nanoszekundumban
+     */
+    protected void report(PrintStream out, long elapsed) {
+        double seconds = elapsed / 1e9;
+        long requests = 0, failed = 0;
+        for (Request.SelectorCase type : TYPES) {
+            requests += latency[type.ordinal()].count();
+            failed += errors[type.ordinal()].sum();
+        }
+        long won = 0, lost = 0, moves = 0, scored = 0;
+        double efficiency = 0;
+        LatencyRecorder solveTime = new LatencyRecorder();
+        for (Results r : results) {
+            won += r.won.sum();
+            lost += r.lost.sum();
+            moves += r.moves.sum();
+            efficiency += r.efficiency.sum();
+            scored += r.scored.sum();
+            solveTime.add(r.solveTime);
+        }
+        long games = won + lost;
+        long[] solve = solveTime.quantiles(0.5, 0.99);
+
+        out.printf(Locale.ROOT, "Strategy %s, seed %d, %d sessions, %.2f s%n", String.join(",", strategies), seed,
+            sessions, seconds);
+        out.printf(Locale.ROOT, "Games: %d won, %d lost, %d sessions failed%n", won, lost, failedSessions.sum());
+        out.printf(Locale.ROOT, "Throughput: %.1f games/s, %.0f moves/s, %.0f requests/s%n",
+            games / seconds, moves / seconds, requests / seconds);
+        out.printf(Locale.ROOT, "Moves per game: %.1f, game time p50 %.1f ms, p99 %.1f ms%n",
+            games > 0 ? (double) moves / games : 0.0, solve[0] / 1e6, solve[1] / 1e6);
+        if (scored > 0) {
+            out.printf(Locale.ROOT, "Efficiency: %.3f (shortest path / moves, mean of %d won games)%n",
+                efficiency / scored, scored);
+        }
+        out.printf(Locale.ROOT, "Errors: %d (%.3f%% of requests), %d connection errors%n",
+            failed, requests > 0 ? 100.0 * failed / requests : 0.0, connectionErrors.sum());
+        if (firstError != null) {
+            out.println("First error: " + firstError);
+        }
+
+        if (strategies.size() > 1) {
+            out.println();
+            out.printf(Locale.ROOT, "%-18s %8s %8s %12s %10s %12s %12s%n",
+                "strategy", "won", "lost", "moves/game", "efficiency", "p50 ms", "p99 ms");
+            for (int i = 0; i < results.length; i++) {
+                Results r = results[i];
+                long n = r.won.sum() + r.lost.sum();
+                long[] q = r.solveTime.quantiles(0.5, 0.99);
+                out.printf(Locale.ROOT, "%-18s %8d %8d %12.1f %10.3f %12.1f %12.1f%n", strategies.get(i),
+                    r.won.sum(), r.lost.sum(), n > 0 ? (double) r.moves.sum() / n : 0.0, r.meanEfficiency(),
+                    q[0] / 1e6, q[1] / 1e6);
+            }
+        }
+
+        out.println();
+        out.printf(Locale.ROOT, "%-22s %10s %10s %10s %10s %10s %10s %8s%n",
+            "request", "count", "p50 us", "p90 us", "p99 us", "p99.9 us", "max us", "errors");
+        for (Request.SelectorCase type : TYPES) {
+            LatencyRecorder h = latency[type.ordinal()];
+            if (h.count() == 0) {
+                continue;
+            }
+            long[] q = h.quantiles(QUANTILES);
+            out.printf(Locale.ROOT, "%-22s %10d %10.1f %10.1f %10.1f %10.1f %10.1f %8d%n",
+                requestName(type), h.count(), q[0] / 1e3, q[1] / 1e3, q[2] / 1e3, q[3] / 1e3, h.max() / 1e3,
+                errors[type.ordinal()].sum());
+        }
+    }
+
+    /**
+     * Kiírja a szerveren betöltött labirintus fájlokat a terhelés helyett
+     * @param out A kimenet
+     * @throws IOException Ha a kapcsolat megszakadt vagy a szerver hibát jelzett
+     */
+    public void list(PrintStream out) throws IOException {
+        try (LabyrinthConnection connection = new LabyrinthConnection(ip, port)) {
+            GameClient game = new GameClient(connection, this);
+            game.startSession("list");
+            List<labyrinthInfo> labyrinths = game.listLabyrinths();
+            game.closeSession();
+
+            out.printf(Locale.ROOT, "%-22s %6s %6s %11s %11s %8s %8s %9s  %s%n",
+                "labyrinth", "rows", "cols", "start", "exit", "walls", "open", "shortest", "sha-256");
+            for (labyrinthInfo info : labyrinths) {
+                out.printf(Locale.ROOT, "%-22s %6d %6d %11s %11s %8d %8d %9s  %s%n", info.getLabyrinthId(),
+                    info.getRows(), info.getCols(), info.getStartX() + "," + info.getStartY(),
+                    info.getExitX() + "," + info.getExitY(), info.getWallCells(), info.getOpenCells(),
+                    info.hasShortestPath() ? String.valueOf(info.getShortestPath()) : "-", info.getContentHash());
+            }
+        }
+    }
+
+    static String requestName(Request.SelectorCase type) {
+        var field = Request.getDescriptor().findFieldByNumber(type.getNumber());
+        return field != null ? field.getName() : type.name();
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        if (args.length < 2) {
+            System.out.println(USAGE);
+            System.exit(1);
+        }
+
+        LoadGenerator gen = new LoadGenerator(args[0], Integer.parseInt(args[1]));
+        boolean list = false;
+
+        try {
+            for (int i = 2; i < args.length; i++) {
+                if (args[i].startsWith("--sessions=")) {
+                    gen.sessions = Integer.parseInt(args[i].substring("--sessions=".length()));
+                }
+                else if (args[i].startsWith("--games=")) {
+                    gen.games = Long.parseLong(args[i].substring("--games=".length()));
+                }
+                else if (args[i].startsWith("--duration=")) {
+                    gen.durationNanos = TimeUnit.SECONDS.toNanos(
+                        Long.parseLong(args[i].substring("--duration=".length())));
+                }
+                else if (args[i].startsWith("--labyrinth=")) {
+                    gen.labyrinthId = args[i].substring("--labyrinth=".length());
+                }
+                else if (args[i].startsWith("--strategy=")) {
+                    gen.strategies = List.of(args[i].substring("--strategy=".length()).split(","));
+                    for (String name : gen.strategies) {
+                        if (!Strategies.contains(name)) {
+                            System.out.println("Unknown strategy " + name + ", expected one of " + Strategies.names());
+                            System.exit(1);
+                        }
+                    }
+                }
+                else if (args[i].startsWith("--seed=")) {
+                    gen.seed = Long.parseLong(args[i].substring("--seed=".length()));
+                }
+                else if (args[i].equals("--list")) {
+                    list = true;
+                }
+                else {
+                    System.out.println(USAGE);
+                    System.exit(1);
+                }
+            }
+        }
+        catch (NumberFormatException e) {
+            System.out.println(USAGE);
+            System.exit(1);
+        }
+
+        if (gen.sessions <= 0) {
+            System.out.println("Invalid session count.");
+            System.exit(1);
+        }
+
+        if (list) {
+            try {
+                gen.list(System.out);
+            }
+            catch (IOException e) {
+                System.out.println("Could not list labyrinths: " + e.getMessage());
+                System.exit(1);
+            }
+            return;
+        }
+
+        gen.run(System.out);
+    }
+}
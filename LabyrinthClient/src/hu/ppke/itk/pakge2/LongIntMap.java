@@ -0,0 +1,135 @@
+package hu.ppke.itk.pakge2;
+
+import java.util.Arrays;
+
+/**
+ * Nyílt címzésű hash tábla long kulcsokkal és int értékekkel. Lineáris próbálkozással keres, így egy keresés egy
+ * tömbben egymás melletti elemeket olvas, és sem a kulcsokat, sem az értékeket nem csomagolja objektumba.
+ * Törölni nem lehet belőle, a megoldó csak bővíti az ismert mezőket.
+ */
+public class LongIntMap {
+    // Marks a free slot; the key itself is stored separately, so it is usable too
+    private static final long FREE = Long.MIN_VALUE;
+
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+
+    private boolean hasFreeKey;
+    private int freeKeyValue;
+
+    public LongIntMap() {
+        this(64);
+    }
+
+    /**
+     * @param expected A várható elemszám, ekkora méretig nem kell átméretezni
+     */
+    public LongIntMap(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(expected * 2 - 1, 8)) << 1;
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(keys, FREE);
+        mask = capacity - 1;
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * @return A kulcshoz tartozó hely indexe, vagy az első szabad hely, ahová kerülne
+     */
+    private int slot(long key) {
+        int i = hash(key) & mask;
+        while (keys[i] != FREE && keys[i] != key) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    /**
+     * @param key A kulcs
+     * @param missing Ezt adja vissza, ha a kulcs nincs a táblában
+     * @return A kulcshoz tartozó érték
+     */
+    public int get(long key, int missing) {
+        if (key == FREE) {
+            return hasFreeKey ? freeKeyValue : missing;
+        }
+        int i = slot(key);
+        return keys[i] == key ? values[i] : missing;
+    }
+
+    public boolean containsKey(long key) {
+        if (key == FREE) {
+            return hasFreeKey;
+        }
+        return keys[slot(key)] == key;
+    }
+
+    /**
+     * @param key A kulcs
+     * @param value Az új érték, felülírja a régit
+     */
+    public void put(long key, int value) {
+        if (key == FREE) {
+            if (!hasFreeKey) {
+                size++;
+            }
+            hasFreeKey = true;
+            freeKeyValue = value;
+            return;
+        }
+        int i = slot(key);
+        values[i] = value;
+        if (keys[i] != key) {
+            keys[i] = key;
+            if (++size * 2 > keys.length) {
+                grow();
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * A tábla minden elemére meghívja a látogatót, meghatározatlan sorrendben
+     */
+    public void forEach(Visitor visitor) {
+        if (hasFreeKey) {
+            visitor.visit(FREE, freeKeyValue);
+        }
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != FREE) {
+                visitor.visit(keys[i], values[i]);
+            }
+        }
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+
+        keys = new long[oldKeys.length * 2];
+        values = new int[oldKeys.length * 2];
+        Arrays.fill(keys, FREE);
+        mask = keys.length - 1;
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != FREE) {
+                int j = slot(oldKeys[i]);
+                keys[j] = oldKeys[i];
+                values[j] = oldValues[i];
+            }
+        }
+    }
+
+    public interface Visitor {
+        void visit(long key, int value);
+    }
+}
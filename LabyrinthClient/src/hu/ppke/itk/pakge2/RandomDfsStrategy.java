@@ -0,0 +1,27 @@
+package hu.ppke.itk.pakge2;
+
+import java.util.Random;
+
+/**
+ * Véletlenszerű mélységi bejárás, ahogy a grafikus kliens is keres: a {@link DfsStrategy} a kipróbálatlan irányok
+ * közül véletlenszerűen választ. Azonos magból indított véletlenszám-generátorral a bejárás megismételhető.
+ */
+public class RandomDfsStrategy extends DfsStrategy {
+    protected final Random random;
+
+    public RandomDfsStrategy() {
+        this(new Random());
+    }
+
+    /**
+     * @param random Az irányválasztás véletlenszám-generátora
+     */
+    public RandomDfsStrategy(Random random) {
+        this.random = random;
+    }
+
+    @Override
+    protected int choose(int mask) {
+        return SolverStrategy.randomBit(random, mask);
+    }
+}
@@ -0,0 +1,36 @@
+package hu.ppke.itk.pakge2;
+
+import hu.ppke.itk.java.labyrinthv09.LabyrinthProtos.*;
+
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Vak véletlen séta: minden lépésben egy véletlen irányba próbál lépni, a falakat sem kerüli el. Megoldásnak
+ * gyenge, de egyenletes, sok apró kéréssel terheli a szervert.
+ */
+public class RandomWalkStrategy implements SolverStrategy {
+    public static final int MAX_MOVES = 100_000;
+
+    protected final Random random;
+
+    public RandomWalkStrategy() {
+        this(new Random());
+    }
+
+    /**
+     * @param random Az irányok véletlenszám-generátora
+     */
+    public RandomWalkStrategy(Random random) {
+        this.random = random;
+    }
+
+    @Override
+    public boolean solve(GameClient game) throws IOException {
+        lookAroundResponse.View view = game.lookAround(0).getView();
+        for (int i = 0; i < MAX_MOVES && view.getCenter() != ViewElement.EXIT; i++) {
+            view = game.moveTo(Direction.forNumber(random.nextInt(4))).getView();
+        }
+        return view.getCenter() == ViewElement.EXIT;
+    }
+}
@@ -0,0 +1,63 @@
+package hu.ppke.itk.pakge2;
+
+import hu.ppke.itk.java.labyrinthv09.LabyrinthProtos.*;
+
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Egy labirintus bejárásának módja. A stratégia egy már elindított játékot játszik végig a {@link GameClient}-en
+ * keresztül, a játék befejezése a hívó dolga. A pozíciókat a kezdőponthoz (0, 0) viszonyítva tartja nyilván, a
+ * szerver koordinátáit nem ismeri.
+ */
+public interface SolverStrategy {
+    /**
+     * Bejárja a labirintust, amíg a kijáratra nem ér vagy fel nem adja
+     * @param game A futó játék
+     * @return true, ha a játékos a kijáraton áll
+     * @throws IOException Ha a kapcsolat megszakadt vagy a szerver hibát jelzett
+     */
+    boolean solve(GameClient game) throws IOException;
+
+    /**
+     * @param dir Egy irány
+     * @return Az ellenkező irány
+     */
+    static Direction opposite(Direction dir) {
+        return Direction.forNumber((dir.getNumber() + 2) % 4);
+    }
+
+    static int dx(Direction dir) {
+        return dir == Direction.EAST ? 1 : dir == Direction.WEST ? -1 : 0;
+    }
+
+    static int dy(Direction dir) {
+        return dir == Direction.SOUTH ? 1 : dir == Direction.NORTH ? -1 : 0;
+    }
+
+    /**
+     * @param view Egy mező környezete
+     * @param dir Egy irány
+     * @return A mező szomszédja az adott irányban
+     */
+    static ViewElement neighbor(lookAroundResponse.View view, Direction dir) {
+        switch (dir) {
+            case NORTH: return view.getNorth();
+            case EAST: return view.getEast();
+            case SOUTH: return view.getSouth();
+            default: return view.getWest();
+        }
+    }
+
+    /**
+     * @param random Véletlenszám-generátor
+     * @param mask Irányok nem üres maszkja
+     * @return Egy véletlenszerűen választott irány bitje a maszkból
+     */
+    static int randomBit(Random random, int mask) {
+        for (int n = random.nextInt(Integer.bitCount(mask)); n > 0; n--) {
+            mask &= mask - 1;
+        }
+        return Integer.lowestOneBit(mask);
+    }
+}
@@ -0,0 +1,65 @@
+package hu.ppke.itk.pakge2;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * A bejárási stratégiák név szerinti nyilvántartása. A grafikus kliens és a terhelésgenerátor innen választ, új
+ * stratégia a {@link #register} hívással vehető fel. Minden stratégia a kapott véletlenszám-generátorból dolgozik,
+ * így azonos magból indítva két futás ugyanazt lépi; a determinisztikus stratégiák figyelmen kívül hagyják.
+ */
+public final class Strategies {
+    public static final String DEFAULT = "random-dfs";
+
+    private static final Map<String, Function<Random, SolverStrategy>> FACTORIES = new LinkedHashMap<>();
+
+    static {
+        register("random-dfs", RandomDfsStrategy::new);
+        register("dfs", random -> new DfsStrategy());
+        register("left-wall", random -> new WallFollowerStrategy(true));
+        register("right-wall", random -> new WallFollowerStrategy(false));
+        register("tremaux", TremauxStrategy::new);
+        register("frontier", random -> new FrontierStrategy());
+        register("dead-end-filling", random -> new DeadEndFillingStrategy(random, FrontierStrategy.DEFAULT_RADIUS));
+        register("random-walk", RandomWalkStrategy::new);
+    }
+
+    private Strategies() {}
+
+    /**
+     * Felvesz egy stratégiát, a már meglévőt azonos néven lecseréli
+     * @param name A stratégia neve
+     * @param factory Egy játékra szóló példányt készít a kapott véletlenszám-generátorral
+     */
+    public static synchronized void register(String name, Function<Random, SolverStrategy> factory) {
+        FACTORIES.put(name, factory);
+    }
+
+    /**
+     * @return A stratégiák neve a felvétel sorrendjében
+     */
+    public static synchronized List<String> names() {
+        return new ArrayList<>(FACTORIES.keySet());
+    }
+
+    public static synchronized boolean contains(String name) {
+        return FACTORIES.containsKey(name);
+    }
+
+    /**
+     * @param name A stratégia neve
+     * @param random A stratégia véletlenszám-generátora
+     * @return Egy új példány egy játékhoz
+     * @throws IllegalArgumentException Ha nincs ilyen nevű stratégia
+     */
+    public static SolverStrategy create(String name, Random random) {
+        Function<Random, SolverStrategy> factory;
+        synchronized (Strategies.class) {
+            factory = FACTORIES.get(name);
+        }
+        if (factory == null) {
+            throw new IllegalArgumentException("Unknown strategy: " + name + ", expected one of " + names());
+        }
+        return factory.apply(random);
+    }
+}
@@ -0,0 +1,94 @@
+package hu.ppke.itk.pakge2;
+
+import hu.ppke.itk.java.labyrinthv09.LabyrinthProtos.*;
+
+import java.io.IOException;
+import java.util.Random;
+
+import static hu.ppke.itk.pakge2.SolverStrategy.*;
+
+/**
+ * Trémaux módszere: minden átjárón feljegyzi, hányszor haladt át, és kétszer bejárt átjárón nem megy többé. Ha új
+ * átjárón át már látott mezőre ér, megfordul; különben a még be nem járt átjárók közül választ véletlenszerűen, ha
+ * nincs ilyen, az egyszer bejártak közül. Körös labirintusban is kijut, és minden átjárón legfeljebb kétszer halad
+ * át.
+ */
+public class TremauxStrategy implements SolverStrategy {
+    protected final Random random;
+
+    public TremauxStrategy() {
+        this(new Random());
+    }
+
+    /**
+     * @param random Az átjárók közötti választás véletlenszám-generátora
+     */
+    public TremauxStrategy(Random random) {
+        this.random = random;
+    }
+
+    @Override
+    public boolean solve(GameClient game) throws IOException {
+        ExplorationMap map = new ExplorationMap();
+        int x = 0, y = 0;
+        Direction came = null;
+        boolean revisited = false;
+
+        lookAroundResponse.View view = game.lookAround(0).getView();
+        map.visit(x, y, view.getCenter());
+
+        while (view.getCenter() != ViewElement.EXIT) {
+            Direction next = next(map, view, x, y, came, revisited);
+            if (next == null) {
+                return false;
+            }
+
+            map.pass(x, y, next);
+            moveToResponse mresp = game.moveTo(next);
+            if (mresp.getStatus() != Status.SUCCESS) {
+                return false;
+            }
+            x += dx(next);
+            y += dy(next);
+            came = opposite(next);
+            view = mresp.getView();
+            revisited = map.isVisited(x, y);
+            map.visit(x, y, view.getCenter());
+        }
+        return true;
+    }
+
+    /**
+     * @param came Az átjáró iránya, amelyen a mezőre érkezett, a kezdőponton null
+     * @param revisited Járt-e már a mezőn az érkezés előtt
+     * @return A következő lépés iránya, vagy null, ha minden átjárót kétszer bejárt
+     */
+    protected Direction next(ExplorationMap map, lookAroundResponse.View view, int x, int y, Direction came,
+            boolean revisited) {
+        for (Direction d : Direction.values()) {
+            if (neighbor(view, d) == ViewElement.EXIT) {
+                return d;
+            }
+        }
+
+        // A fresh passage into a known field closes a loop, walk it back
+        if (revisited && came != null && map.passes(x, y, came) == 1) {
+            return came;
+        }
+
+        int open = ExplorationMap.openDirections(view);
+        for (int marks = 0; marks < 2; marks++) {
+            int mask = 0;
+            for (int m = open; m != 0; m &= m - 1) {
+                Direction d = Direction.forNumber(Integer.numberOfTrailingZeros(m));
+                if (map.passes(x, y, d) == marks) {
+                    mask |= ExplorationMap.bit(d);
+                }
+            }
+            if (mask != 0) {
+                return Direction.forNumber(Integer.numberOfTrailingZeros(randomBit(random, mask)));
+            }
+        }
+        return null;
+    }
+}
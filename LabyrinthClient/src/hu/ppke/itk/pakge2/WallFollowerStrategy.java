@@ -0,0 +1,75 @@
+package hu.ppke.itk.pakge2;
+
+import hu.ppke.itk.java.labyrinthv09.LabyrinthProtos.*;
+
+import java.io.IOException;
+
+import static hu.ppke.itk.pakge2.SolverStrategy.*;
+
+/**
+ * Falkövetés: a játékos egyik kezét végig a falon tartja, vagyis minden mezőn először a keze felé fordul, aztán
+ * egyenesen, a másik irányba, végül vissza. Körmentes labirintusban mindig kijut, minden átjárón legfeljebb kétszer
+ * halad át. Ha egy átjárón harmadszor menne át, körbe jár egy sziget körül, ezért feladja.
+ */
+public class WallFollowerStrategy implements SolverStrategy {
+    protected final boolean leftHand;
+
+    /**
+     * @param leftHand true esetén a bal, különben a jobb kezét tartja a falon
+     */
+    public WallFollowerStrategy(boolean leftHand) {
+        this.leftHand = leftHand;
+    }
+
+    @Override
+    public boolean solve(GameClient game) throws IOException {
+        ExplorationMap map = new ExplorationMap();
+        int x = 0, y = 0;
+        Direction facing = Direction.NORTH;
+
+        lookAroundResponse.View view = game.lookAround(0).getView();
+        map.visit(x, y, view.getCenter());
+
+        while (view.getCenter() != ViewElement.EXIT) {
+            Direction next = next(view, facing);
+            if (next == null || map.pass(x, y, next) == ExplorationMap.MAX_PASSES) {
+                return false;
+            }
+
+            moveToResponse mresp = game.moveTo(next);
+            if (mresp.getStatus() != Status.SUCCESS) {
+                return false;
+            }
+            x += dx(next);
+            y += dy(next);
+            facing = next;
+            view = mresp.getView();
+            map.visit(x, y, view.getCenter());
+        }
+        return true;
+    }
+
+    /**
+     * @return A következő lépés iránya: a szomszédos kijárat, vagy a kéz felőli első nyitott irány, null, ha a mező
+     * minden oldalról zárt
+     */
+    protected Direction next(lookAroundResponse.View view, Direction facing) {
+        for (Direction d : Direction.values()) {
+            if (neighbor(view, d) == ViewElement.EXIT) {
+                return d;
+            }
+        }
+
+        // Hand side first, then straight on, the other side and back
+        int turn = leftHand ? 3 : 1;
+        int dir = (facing.getNumber() + turn) % 4;
+        for (int i = 0; i < 4; i++) {
+            Direction d = Direction.forNumber(dir);
+            if (neighbor(view, d) != ViewElement.WALL) {
+                return d;
+            }
+            dir = (dir + 4 - turn) % 4;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,153 @@
+package hu.ppke.itk.java.labyrinthv09.server;
+
+import java.util.Arrays;
+
+/**
+ * Minden cella legrövidebb távolsága a kijárattól, lépésben, egy szélességi
+ * keresésből. Labirintusonként egyszer készül el, utána bármely cella optimális
+ * távolsága lekérdezhető, és kiderül belőle, hogy a kezdőpontból elérhető-e a
+ * kijárat.
+ * <p>
+ * A távolságok cellánként 2 bájton, {@value #MODULUS} szerinti maradékként
+ * tárolódnak, a {@code 0xFFFF} érték jelöli az elérhetetlen cellákat. Ha a
+ * labirintus kevesebb, mint {@value #MODULUS} cellából áll, a maradék maga a
+ * távolság (egy út sem hosszabb a cellák számánál), és a lekérdezés O(1).
+ * Nagyobb labirintusban a lekérdezés a kijárat felé vezető úton lépked:
+ * szomszédos cellák távolsága pontosan 1-gyel tér el, így mindig van olyan
+ * szomszéd, amelynek maradéka eggyel kisebb, és a kijáratig megtett lépések
+ * száma adja a távolságot.
+ */
+public final class DistanceField {
+    public static final int UNREACHABLE = -1;
+
+    static final int MODULUS = Character.MAX_VALUE;
+
+    private static final char CHAR_UNREACHABLE = Character.MAX_VALUE;
+
+    public final int rows;
+    public final int cols;
+
+    private final char[] distances;
+    private final Point exit;
+
+    private DistanceField(int rows, int cols, char[] distances, Point exit) {
+        this.rows = rows;
+        this.cols = cols;
+        this.distances = distances;
+        this.exit = exit;
+    }
+
+    /**
+     * Szélességi keresés a kijárattól a labirintus nem fal cellái között.
+     *
+     * @param maze a labirintus
+     * @param exit a kijárat, ha a labirintuson kívül esik, minden cella elérhetetlen
+     * @return a labirintus távolságmezője
+     */
+    public static DistanceField of(Maze maze, Point exit) {
+        char[] distances = new char[maze.rows * maze.cols];
+        Arrays.fill(distances, CHAR_UNREACHABLE);
+
+        DistanceField field = new DistanceField(maze.rows, maze.cols, distances, exit);
+        if (!maze.contains(exit.x, exit.y) || maze.isWall(exit.x, exit.y)) {
+            return field;
+        }
+
+        // Ring buffer of cell indexes; the frontier of a maze is narrow, so it rarely grows
+        int[] queue = new int[1024];
+        int head = 0, size = 0;
+        int first = exit.y * maze.cols + exit.x;
+        distances[first] = 0;
+        queue[size++] = first;
+
+        int[] steps = { -maze.cols, 1, maze.cols, -1 };
+        while (size > 0) {
+            int idx = queue[head];
+            head = (head + 1) & (queue.length - 1);
+            size--;
+
+            char next = (char) ((distances[idx] + 1) % MODULUS);
+            int x = idx % maze.cols, y = idx / maze.cols;
+            for (int d = 0; d < 4; d++) {
+                int nx = x + (d == 1 ? 1 : d == 3 ? -1 : 0);
+                int ny = y + (d == 2 ? 1 : d == 0 ? -1 : 0);
+                int n = idx + steps[d];
+                if (!maze.contains(nx, ny) || distances[n] != CHAR_UNREACHABLE || maze.get(n) == Labyrinth.WALL) {
+                    continue;
+                }
+                distances[n] = next;
+
+                if (size == queue.length) {
+                    int[] grown = new int[queue.length * 2];
+                    for (int i = 0; i < size; i++) {
+                        grown[i] = queue[(head + i) & (queue.length - 1)];
+                    }
+                    queue = grown;
+                    head = 0;
+                }
+                queue[(head + size) & (queue.length - 1)] = n;
+                size++;
+            }
+        }
+        return field;
+    }
+
+    /**
+     * @return a {@code (x, y)} cellától a kijáratig tartó legrövidebb út
+     *         lépésszáma, vagy {@link #UNREACHABLE}, ha a cella fal, a
+     *         labirintuson kívül esik, vagy nem vezet belőle út a kijárathoz
+     */
+    public int distance(int x, int y) {
+        if (x < 0 || y < 0 || x >= cols || y >= rows) {
+            return UNREACHABLE;
+        }
+        int idx = y * cols + x;
+        char d = distances[idx];
+        if (d == CHAR_UNREACHABLE) {
+            return UNREACHABLE;
+        }
+        if (distances.length < MODULUS) {
+            return d;
+        }
+        return walk(idx);
+    }
+
+    /**
+     * Végiglépked a kijáratig mindig arra a szomszédra, amelynek maradéka
+     * eggyel kisebb. A szomszédok valódi távolsága d-1, d vagy d+1, ezek
+     * maradéka különbözik, így a választás egyértelmű.
+     */
+    private int walk(int idx) {
+        int target = exit.y * cols + exit.x;
+        int steps = 0;
+        while (idx != target) {
+            char lower = (char) ((distances[idx] + MODULUS - 1) % MODULUS);
+            int x = idx % cols, y = idx / cols;
+            if (y > 0 && distances[idx - cols] == lower) idx -= cols;
+            else if (x < cols - 1 && distances[idx + 1] == lower) idx += 1;
+            else if (y < rows - 1 && distances[idx + cols] == lower) idx += cols;
+            else idx -= 1;
+            steps++;
+        }
+        return steps;
+    }
+
+    /**
+     * @return elérhető-e a kijárat a megadott cellából
+     */
+    public boolean isSolvable(Point start) {
+        return start.x >= 0 && start.y >= 0 && start.x < cols && start.y < rows
+            && distances[start.y * cols + start.x] != CHAR_UNREACHABLE;
+    }
+
+    public Point getExit() {
+        return exit;
+    }
+
+    /**
+     * @return a távolságok tárolására használt bájtok száma
+     */
+    public long sizeInBytes() {
+        return (long) distances.length * Character.BYTES;
+    }
+}
@@ -7,7 +7,6 @@ import java.io.*;
 import java.util.*;
 
 public class Labyrinth implements LabyrinthGenerator {
-    private static final int UNVISITED = -1;
     private static final int PLAYER = -2;
     public static final int PATH = ViewElement.WAY_VALUE;
     public static final int WALL = ViewElement.WALL_VALUE;
@@ -19,7 +18,7 @@ public class Labyrinth implements LabyrinthGenerator {
     public final int rows;
     public final int cols;
 
-    private final int[] maze;
+    private volatile Maze maze;
 
     private Point start;
     private Point exit;
@@ -45,7 +44,7 @@ public class Labyrinth implements LabyrinthGenerator {
         this.rows = rows + (rows + 1);
         this.cols = columns + (columns + 1);
 
-        this.maze = new int[this.rows * this.cols];
+        this.maze = new Maze(this.rows, this.cols);
 
         if (start != null) setStart(start.x, start.y);
         else setStart(0, 0);
@@ -68,18 +67,29 @@ public class Labyrinth implements LabyrinthGenerator {
     }
 
     public void toFile(String path) throws IOException {
+        Maze maze = this.maze;
         PrintWriter w = new PrintWriter(new FileWriter(path));
 
         w.println(nodeRows);
         w.println(nodeCols);
 
         for (int i = 0; i < rows * cols; i++) {
-            w.write(maze[i]);
+            w.write(maze.get(i));
         }
 
         w.close();
     }
 
+    /**
+     * Kiírja az utoljára elkészített labirintust bináris formátumban.
+     *
+     * @param path a fájl útvonala
+     * @see LabyrinthFile
+     */
+    public void toBinaryFile(String path) throws IOException {
+        LabyrinthFile.write(path, maze, start, exit);
+    }
+
     /**
      * Kiszámolja egy rácspont {@code maze}-beli indexét annak
      * relatív (= egymáshoz viszonyított, falak nélküli) koordinátáiból.
@@ -93,20 +103,6 @@ public class Labyrinth implements LabyrinthGenerator {
         return (nodeY*2+1) * cols + (nodeX*2+1);
     }
 
-    /**
-     * Kiszámolja egy rácspont koordinátáit annak {@code maze}-ben
-     * elfoglalt indexe alapján. Az eredmény relatív koordinátáként
-     * (= csak rácspontok léteznek) értendő.
-     *
-     * @param gridIdx a rácspont indexe a {@code maze} tömbben
-     * @return a rácspont koordinátái
-     */
-    private Point nodeCoords(int gridIdx) {
-        int x = (gridIdx % cols) / 2;
-        int y = (gridIdx / cols) / 2;
-        return new Point(x, y);
-    }
-
     /**
      * Kiszámolja egy cella koordinátáit annak {@code maze}-beli
      * indexe alapján.
@@ -145,99 +141,106 @@ public class Labyrinth implements LabyrinthGenerator {
     }
 
     /**
-     * Kiszámolja egy cella {@code maze}-beli indexét.
-     *
-     * @param x a keresett cella x-koordinátája
-     * @param y a keresett cella y-koordinátája
-     * @return a cella indexe a {@code maze} tömbben
-     */
-    private int gridIndex(int x, int y) {
-        return y * cols + x;
-    }
-
-    /**
-     * Megkeresi egy rácspont szomszédait.
+     * Megkeresi egy rácspont még nem látogatott szomszédait, nyugat, kelet,
+     * észak, dél sorrendben. Egy rácspont addig nem látogatott, amíg fal.
      *
-     * @param idx a rácspont indexe, a rácspontok koordináta rendszerében
-     * @return a rácspont szomszédai
+     * @param maze a készülő labirintus
+     * @param idx a rácspont indexe a {@code maze} tömbben
+     * @param nbs legalább 4 elemű tömb, ide kerülnek a szomszédok indexei
+     * @return a talált szomszédok száma
      */
-    private List<Integer> neighborNodes(int idx) {
-        Point c = nodeCoords(idx);
-        int x = c.x;
-        int y = c.y;
-
-        List<Integer> nbs = new ArrayList<>();
-        if (x > 0)          nbs.add(nodeIndex(x-1, y));
-        if (x < nodeCols-1) nbs.add(nodeIndex(x+1, y));
-        if (y > 0)          nbs.add(nodeIndex(x, y-1));
-        if (y < nodeRows-1) nbs.add(nodeIndex(x, y+1));
-        return nbs;
+    private int unvisitedNeighbors(Maze maze, int idx, int[] nbs) {
+        int x = (idx % cols) / 2;
+        int y = (idx / cols) / 2;
+
+        int n = 0;
+        if (x > 0          && maze.get(idx - 2) == WALL)      nbs[n++] = idx - 2;
+        if (x < nodeCols-1 && maze.get(idx + 2) == WALL)      nbs[n++] = idx + 2;
+        if (y > 0          && maze.get(idx - 2*cols) == WALL) nbs[n++] = idx - 2*cols;
+        if (y < nodeRows-1 && maze.get(idx + 2*cols) == WALL) nbs[n++] = idx + 2*cols;
+        return n;
     }
 
     /**
      * Elkészíti vagy frissíti a létező labirintust a megadott {@code seed}
      * alapján, DFS algoritmussal. Azonos {@code seed}ek ugyanazt a labirintust
-     * eredményezik.
+     * eredményezik. Minden hívás saját tömbbe dolgozik, így egy példány
+     * egyszerre több munkamenetből is használható.
      */
     @Override
-    public int[][] generate(String seed) {
-        // Reset maze
-        Arrays.fill(maze, 0);
-
-        // Set all nodes to unvisited
-        for (int y = 0; y < nodeRows; y++) {
-            for (int x = 0; x < nodeCols; x++) {
-                maze[nodeIndex(x, y)] = UNVISITED;
-            }
+    public Maze generate(String seed) {
+        var event = new Metrics.GenerateEvent();
+        event.begin();
+        long start = System.nanoTime();
+
+        Maze maze = carve(Utils.stringToSeed(seed));
+        this.maze = maze;
+
+        Metrics.recordGenerate(System.nanoTime() - start);
+        event.end();
+        if (event.shouldCommit()) {
+            event.rows = nodeRows;
+            event.cols = nodeCols;
+            event.commit();
         }
 
+        return maze;
+    }
+
+    /**
+     * Elkészít egy új labirintust egy frissen foglalt tömbben.
+     *
+     * @param seed a véletlenszám-generátor kezdőértéke
+     * @return a labirintus
+     */
+    private Maze carve(long seed) {
+        // All cells start as walls, nodes included: a node is unvisited
+        // until it is carved
+        Maze maze = new Maze(rows, cols);
+
         // Generate maze
-        long _seed = Utils.stringToSeed(seed);
-        Random rnd = new Random(_seed);
-        Stack<Integer> s = new Stack<>();
+        Random rnd = new Random(seed);
+
+        // Every visit grows the stack by one, and each node is visited once,
+        // apart from the starting node which is pushed before being visited
+        int[] s = new int[nodeRows * nodeCols + 1];
+        int top = 0;
+        int[] unvisited = new int[4];
 
-        s.push(nodeIndex(0, 0));
+        s[top++] = nodeIndex(0, 0);
 
         // While the stack is not empty
-        while (!s.empty()) {
+        while (top > 0) {
 
             // Pop a cell from the stack and make it a current cell
-            int c = s.pop();
+            int c = s[--top];
 
-            var unvisited = neighborNodes(c).stream()
-                .filter(p -> maze[p] == UNVISITED)
-                .toArray(Integer[]::new);
+            int count = unvisitedNeighbors(maze, c, unvisited);
 
             // If the current cell has any neighbours which have not been visited
-            if (unvisited.length > 0) {
+            if (count > 0) {
                 // Choose one of the unvisited neighbours
-                int randidx = (rnd.nextInt() & Integer.MAX_VALUE) % unvisited.length;
+                int randidx = (rnd.nextInt() & Integer.MAX_VALUE) % count;
                 int neighbor = unvisited[randidx];
 
                 // Mark the chosen cell as visited and push it to the stack
-                maze[neighbor] = 1;
+                maze.set(neighbor, PATH);
 
-                // Remove the wall between the current cell and the chosen cell
-                Point a = gridCoords(c);
-                Point b = gridCoords(neighbor);
-
-                // Wall position
-                int wx = (a.x + b.x) / 2;
-                int wy = (a.y + b.y) / 2;
-
-                maze[gridIndex(wx, wy)] = PATH;
+                // Remove the wall between the current cell and the chosen cell,
+                // which lies halfway between them in the same row or column
+                maze.set((c + neighbor) / 2, PATH);
 
                 // Push the current and chosen cells to the stack
-                s.push(c);
-                s.push(neighbor);
+                s[top++] = c;
+                s[top++] = neighbor;
             }
         }
 
         // Set start and exit
-        maze[gridIndex(start.x, start.y)] = START;
-        maze[gridIndex(exit.x, exit.y)] = EXIT;
+        maze.set(start.x, start.y, START);
+        maze.set(exit.x, exit.y, EXIT);
 
-        return getLabyrinth();
+        return maze;
     }
 
     /**
@@ -254,7 +257,7 @@ public class Labyrinth implements LabyrinthGenerator {
         if (outOfBounds(gc.x, gc.y))
             throw new RuntimeException("Start point can't be out of bounds.");
 
-        maze[gridIndex(gc.x, gc.y)] = START;
+        maze.set(gc.x, gc.y, START);
         this.start = gc;
     }
 
@@ -272,7 +275,7 @@ public class Labyrinth implements LabyrinthGenerator {
         if (outOfBounds(gc.x, gc.y))
             throw new RuntimeException("Exit point can't be out of bounds.");
 
-        maze[gridIndex(gc.x, gc.y)] = EXIT;
+        maze.set(gc.x, gc.y, EXIT);
         this.exit = gc;
     }
 
@@ -284,7 +287,7 @@ public class Labyrinth implements LabyrinthGenerator {
      *      a cél pont koordinátái
      */
     @Override
-    public Point getStart(int[][] labyrinth) {
+    public Point getStart(Maze labyrinth) {
         return new Point(start.x, start.y);
     }
 
@@ -296,29 +299,25 @@ public class Labyrinth implements LabyrinthGenerator {
      *      a cél pont koordinátái
      */
     @Override
-    public Point getExit(int[][] labyrinth) {
+    public Point getExit(Maze labyrinth) {
         return new Point(exit.x, exit.y);
     }
 
 
     /**
-     * Visszaadja az elkészített labirintus másolatát, 2D tömbként.
+     * Visszaadja az elkészített labirintus másolatát.
      * @return az elkészített labirintus
      */
-    public int[][] getLabyrinth() {
-        int[][] mz = new int[rows][cols];
-
-        for (int y = 0; y < rows; y++) {
-            for (int x = 0; x < cols; x++) {
-                mz[y][x] = maze[gridIndex(x, y)];
-            }
-        }
-
-        return mz;
+    public Maze getLabyrinth() {
+        return maze.copy();
     }
 
     @Override
-    public String format(int[][] labyrinth) {
+    public String format(Maze labyrinth) {
+        return format(labyrinth.toArray());
+    }
+
+    private String format(int[][] labyrinth) {
         StringBuilder sb = new StringBuilder();
         for (int[] row : labyrinth) {
             for (int cell : row) {
@@ -337,7 +336,7 @@ public class Labyrinth implements LabyrinthGenerator {
     }
 
     public String toString(Point player) {
-        var lb = getLabyrinth();
+        var lb = maze.toArray();
         lb[player.y][player.x] = PLAYER;
 
         return format(lb);
@@ -350,6 +349,6 @@ public class Labyrinth implements LabyrinthGenerator {
      */
     @Override
     public String toString() {
-        return format(getLabyrinth());
+        return format(maze);
     }
 }
@@ -0,0 +1,175 @@
+package hu.ppke.itk.java.labyrinthv09.server;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+
+/**
+ * Bináris labirintus fájlformátum. A fájl egy fix méretű fejléccel kezdődik,
+ * utána a {@link Maze} tömörített cellái következnek változtatás nélkül,
+ * így a fájl {@link FileChannel#map}-pel, másolás nélkül betölthető, és az
+ * operációs rendszer csak a ténylegesen olvasott lapokat tölti be.
+ * <pre>
+ * offset  méret  tartalom
+ *      0      4  "LABY"
+ *      4      4  verzió (1)
+ *      8      4  cellák sorainak száma (falakkal együtt)
+ *     12      4  cellák oszlopainak száma (falakkal együtt)
+ *     16      8  kezdőpont x, y
+ *     24      8  célpont x, y
+ *     32      -  a cellák, cellánként 2 bit, 64 bites big-endian szavakban
+ * </pre>
+ */
+public final class LabyrinthFile {
+    public static final String EXTENSION = ".lab";
+
+    static final int MAGIC = 0x4C414259; // "LABY"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 32;
+
+    public final Maze maze;
+    public final Point start;
+    public final Point exit;
+
+    private LabyrinthFile(Maze maze, Point start, Point exit) {
+        this.maze = maze;
+        this.start = start;
+        this.exit = exit;
+    }
+
+    /**
+     * Megadja egy szöveges labirintus fájl bináris párjának nevét.
+     *
+     * @param path a szöveges fájl útvonala, pl. {@code lab_r5c5.txt}
+     * @return a bináris fájl útvonala, pl. {@code lab_r5c5.lab}
+     */
+    public static String binaryPath(String path) {
+        int dot = path.lastIndexOf('.');
+        int sep = Math.max(path.lastIndexOf('/'), path.lastIndexOf(File.separatorChar));
+
+        return (dot > sep ? path.substring(0, dot) : path) + EXTENSION;
+    }
+
+    /**
+     * Beolvassa a bináris labirintust. A cellák a fájlba leképezett,
+     * csak olvasható memóriában maradnak.
+     *
+     * @param path a fájl útvonala
+     * @return a beolvasott labirintus
+     * @throws IOException ha a fájl nem olvasható vagy nem ilyen formátumú
+     */
+    public static LabyrinthFile read(String path) throws IOException {
+        try (FileChannel ch = FileChannel.open(Path.of(path), StandardOpenOption.READ)) {
+            if (ch.size() < HEADER_SIZE) {
+                throw new IOException("Not a labyrinth file: " + path);
+            }
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining()) {
+                if (ch.read(header, header.position()) < 0) {
+                    throw new EOFException(path);
+                }
+            }
+            header.flip();
+
+            if (header.getInt() != MAGIC) {
+                throw new IOException("Not a labyrinth file: " + path);
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported labyrinth file version " + version + ": " + path);
+            }
+
+            int rows = header.getInt();
+            int cols = header.getInt();
+            Point start = new Point(header.getInt(), header.getInt());
+            Point exit = new Point(header.getInt(), header.getInt());
+
+            // Cells are indexed with an int, so the header must not describe more of them
+            if (rows <= 0 || cols <= 0 || (long) rows * cols > Integer.MAX_VALUE) {
+                throw new IOException("Invalid labyrinth size " + rows + "x" + cols + ": " + path);
+            }
+            long payload = (long) Maze.words(rows, cols) * Long.BYTES;
+            if (ch.size() < HEADER_SIZE + payload) {
+                throw new IOException("Truncated labyrinth file: " + path);
+            }
+            if (!inside(start, rows, cols) || !inside(exit, rows, cols)) {
+                throw new IOException("Start or exit outside the labyrinth: " + path);
+            }
+
+            // The mapping stays valid after the channel is closed
+            MappedByteBuffer data = ch.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, payload);
+            LongBuffer cells = data.asLongBuffer();
+
+            return new LabyrinthFile(new Maze(rows, cols, cells, true), start, exit);
+        }
+    }
+
+    private static boolean inside(Point p, int rows, int cols) {
+        return p.x >= 0 && p.y >= 0 && p.x < cols && p.y < rows;
+    }
+
+    /**
+     * Kiírja a labirintust bináris formátumban.
+     *
+     * @param path a fájl útvonala
+     * @param maze a labirintus
+     * @param start a kezdőpont
+     * @param exit a célpont
+     * @throws IOException ha a fájl nem írható
+     */
+    public static void write(String path, Maze maze, Point start, Point exit) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(path)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(maze.rows);
+            out.writeInt(maze.cols);
+            out.writeInt(start.x);
+            out.writeInt(start.y);
+            out.writeInt(exit.x);
+            out.writeInt(exit.y);
+
+            LongBuffer words = maze.words();
+            while (words.hasRemaining()) {
+                out.writeLong(words.get());
+            }
+        }
+    }
+
+    /**
+     * Átalakítja a megadott szöveges labirintus fájlokat bináris formátumba,
+     * a bemenet mellé, {@value #EXTENSION} kiterjesztéssel.
+     *
+     * @param args a szöveges labirintus fájlok
+     */
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.out.println("LabyrinthFile <labyrinth file>...");
+            System.exit(1);
+        }
+
+        for (String in : args) {
+            String out = binaryPath(in);
+            if (out.equals(in)) {
+                System.out.println("Skipping " + in + ", already binary");
+                continue;
+            }
+
+            try {
+                LabyrinthLite lab = LabyrinthLite.fromFile(in);
+                Maze maze = lab.getLabyrinth();
+
+                write(out, maze, lab.getStart(maze), lab.getExit(maze));
+                System.out.println(in + " -> " + out);
+            }
+            catch (IOException e) {
+                System.out.println("Error: " + e.getMessage());
+                System.out.println("Failed to convert " + in);
+            }
+        }
+    }
+}
@@ -2,8 +2,31 @@ package hu.ppke.itk.java.labyrinthv09.server;
 
 
 public interface LabyrinthGenerator {
-    int[][] generate(String seed);
-    Point getStart(int[][] labyrinth);
-    Point getExit(int[][] labyrinth);
-    String format(int[][] labyrinth);
+    Maze generate(String seed);
+    Point getStart(Maze labyrinth);
+    Point getExit(Maze labyrinth);
+    String format(Maze labyrinth);
+
+    /**
+     * Egy labirintus a távolságmezőjével együtt.
+     */
+    record Prepared(Maze maze, DistanceField distances) {}
+
+    /**
+     * A labirintus távolságmezője a kijárattól. Az alapértelmezés minden
+     * hívásra újra kiszámolja.
+     */
+    default DistanceField distances(Maze labyrinth) {
+        return DistanceField.of(labyrinth, getExit(labyrinth));
+    }
+
+    /**
+     * Elkészíti a labirintust és a távolságmezőjét. A tároló generátorok
+     * mindkettőt egyszer számolják ki, és együtt adják vissza, így a
+     * távolságmezőt nem kell utólag megkeresni vagy újra kiszámolni.
+     */
+    default Prepared prepare(String seed) {
+        Maze maze = generate(seed);
+        return new Prepared(maze, distances(maze));
+    }
 }
@@ -0,0 +1,18 @@
+package hu.ppke.itk.java.labyrinthv09.server;
+
+/**
+ * Egy betöltött labirintus fájl adatai. A {@link LabyrinthLite#preload}
+ * egyszer számolja ki őket a fájl betöltésekor, a játékok indításakor már
+ * nem kell végigolvasni a labirintust.
+ *
+ * @param name a labirintus azonosítója, a fájl neve
+ * @param openCells a nem fal cellák száma, a kezdőponttal és a kijárattal együtt
+ * @param shortestPath a legrövidebb út hossza a kezdőponttól a kijáratig, vagy {@link DistanceField#UNREACHABLE}
+ * @param contentHash a cellák tartalmának SHA-256 lenyomata hexadecimálisan, a fájl formátumától független
+ */
+public record LabyrinthInfo(String name, int rows, int cols, Point start, Point exit,
+                            int wallCells, int openCells, int shortestPath, String contentHash) {
+    public boolean isSolvable() {
+        return shortestPath != DistanceField.UNREACHABLE;
+    }
+}
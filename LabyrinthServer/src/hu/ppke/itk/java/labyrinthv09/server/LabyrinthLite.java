@@ -1,79 +1,243 @@
 package hu.ppke.itk.java.labyrinthv09.server;
 
 import java.io.BufferedReader;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 public class LabyrinthLite implements LabyrinthGenerator {
     private int rows;
     private int cols;
-    private int[] maze;
+    private Maze maze;
+    // Known without scanning when the file header stores them (see LabyrinthFile)
+    private Point start;
+    private Point exit;
     private Map<String, LabyrinthLite> cache;
+    private Map<Maze, DistanceField> distances;
+    private Map<String, LabyrinthInfo> infoByName;
+    private Map<Maze, LabyrinthInfo> infoByMaze;
 
 
-    private static final int[][] DEFAULT = {
+    private static final Maze DEFAULT = Maze.of(new int[][] {
         {0, 0, 0, 0, 0, 0, 0, 0, 0},
         {0, 5, 1, 1, 1, 1, 1, 0, 0},
         {0, 0, 1, 0, 1, 0, 0, 0, 0},
         {0, 0, 1, 1, 1, 1, 1, 3, 0},
         {0, 0, 0, 0, 0, 0, 0, 0, 0},
-    };
+    }).readOnly();
 
 
     protected LabyrinthLite(int rows, int cols) {
         this.rows = rows;
         this.cols = cols;
-        this.maze = new int[rows * cols];
+        this.maze = new Maze(rows, cols);
     }
 
-    private static LabyrinthLite fromFile(String path) throws IOException {
-        BufferedReader r = new BufferedReader(new FileReader(path));
-
-        int rows = Integer.parseInt(r.readLine()) * 2 + 1;
-        int cols = Integer.parseInt(r.readLine()) * 2 + 1;
+    private LabyrinthLite(Maze maze) {
+        this.rows = maze.rows;
+        this.cols = maze.cols;
+        this.maze = maze;
+    }
 
-        LabyrinthLite lab = new LabyrinthLite(rows, cols);
+    /**
+     * Betölti a labirintust. Ha a fájl mellett van bináris változat
+     * ({@link LabyrinthFile}), azt képezi le a memóriába, különben a
+     * szöveges fájlt olvassa be.
+     *
+     * @param path a szöveges labirintus fájl útvonala
+     * @return a betöltött labirintus
+     * @throws IOException ha egyik változat sem olvasható
+     */
+    static LabyrinthLite load(String path) throws IOException {
+        String binary = LabyrinthFile.binaryPath(path);
 
-        for (int i = 0; i < rows * cols; i++) {
-            lab.maze[i] = r.read();
+        if (!binary.equals(path) && new File(binary).isFile()) {
+            LabyrinthFile file = LabyrinthFile.read(binary);
+            LabyrinthLite lab = new LabyrinthLite(file.maze);
+            lab.start = file.start;
+            lab.exit = file.exit;
+            return lab;
         }
+        return fromFile(path);
+    }
+
+    /**
+     * Beolvassa a szöveges labirintus fájlt.
+     *
+     * @param path a fájl útvonala
+     * @return a beolvasott labirintus
+     * @throws IOException ha a fájl nem olvasható, a méretei hibásak, vagy
+     *         rövidebb, mint amit a méretei alapján tartalmaznia kell
+     */
+    static LabyrinthLite fromFile(String path) throws IOException {
+        try (BufferedReader r = new BufferedReader(new FileReader(path))) {
+            int rows, cols;
+            try {
+                rows = Integer.parseInt(String.valueOf(r.readLine()).trim()) * 2 + 1;
+                cols = Integer.parseInt(String.valueOf(r.readLine()).trim()) * 2 + 1;
+            }
+            catch (NumberFormatException e) {
+                throw new IOException("Invalid labyrinth size in " + path, e);
+            }
+            if (rows <= 0 || cols <= 0) {
+                throw new IOException("Invalid labyrinth size in " + path);
+            }
+
+            LabyrinthLite lab = new LabyrinthLite(rows, cols);
+
+            for (int i = 0; i < rows * cols; i++) {
+                int cell = r.read();
+                if (cell < 0) {
+                    throw new EOFException("Truncated labyrinth file " + path + ": "
+                        + i + " of " + rows * cols + " cells");
+                }
+                try {
+                    lab.maze.set(i, cell);
+                }
+                catch (IllegalArgumentException e) {
+                    throw new IOException("Invalid cell " + cell + " at " + i + " in " + path, e);
+                }
+            }
+            lab.maze = lab.maze.readOnly();
 
-        r.close();
-        return lab;
+            return lab;
+        }
     }
 
     public static LabyrinthLite preload(Collection<String> files) throws IOException {
+        var event = new Metrics.PreloadEvent();
+        event.begin();
+        long start = System.nanoTime();
+
         LabyrinthLite store = new LabyrinthLite(0, 0);
         store.cache = new HashMap<>();
+        store.distances = new IdentityHashMap<>();
+        store.infoByName = new LinkedHashMap<>();
+        store.infoByMaze = new IdentityHashMap<>();
+        store.describe("default", DEFAULT, null, null);
 
         for (var f : files) {
             String k = new File(f).getName();
-            LabyrinthLite v = fromFile(f);
+            LabyrinthLite v = load(f);
+
+            LabyrinthInfo info = store.describe(k, v.maze, v.start, v.exit);
+            if (!info.isSolvable()) {
+                Log.warn(Server.LOG_SOURCE, "Labyrinth file '" + k + "' has no path from the start to the exit");
+            }
 
             store.cache.put(k, v);
+            store.infoByName.put(k, info);
+        }
+
+        Metrics.recordPreload(System.nanoTime() - start, files.size());
+        event.end();
+        if (event.shouldCommit()) {
+            event.files = files.size();
+            event.commit();
         }
         return store;
     }
 
-    public int[][] getLabyrinth() {
-        int[][] mz = new int[rows][cols];
+    /**
+     * Egyetlen menetben megszámolja a cellákat és kiszámolja a lenyomatot,
+     * közben megkeresi a kezdőpontot és a kijáratot, ha nem ismertek, majd
+     * elkészíti a távolságmezőt. Mindkettőt eltárolja a labirintushoz.
+     *
+     * @param start a bináris fájl fejlécéből ismert kezdőpont, vagy null
+     * @param exit a bináris fájl fejlécéből ismert kijárat, vagy null
+     */
+    private LabyrinthInfo describe(String name, Maze maze, Point start, Point exit) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to provide SHA-256
+            throw new IllegalStateException(e);
+        }
+        digest.update(new byte[] {
+            (byte) (maze.rows >>> 24), (byte) (maze.rows >>> 16), (byte) (maze.rows >>> 8), (byte) maze.rows,
+            (byte) (maze.cols >>> 24), (byte) (maze.cols >>> 16), (byte) (maze.cols >>> 8), (byte) maze.cols,
+        });
 
-        for (int y = 0; y < rows; y++) {
-            for (int x = 0; x < cols; x++) {
-                mz[y][x] = maze[y * cols + x];
+        int walls = 0;
+        byte[] row = new byte[maze.cols];
+        for (int y = 0; y < maze.rows; y++) {
+            for (int x = 0; x < maze.cols; x++) {
+                int cell = maze.get(x, y);
+                row[x] = (byte) cell;
+                if (cell == Labyrinth.WALL) {
+                    walls++;
+                }
+                else if (cell == 5 && start == null) {
+                    start = new Point(x, y);
+                }
+                else if (cell == 3 && exit == null) {
+                    exit = new Point(x, y);
+                }
             }
+            digest.update(row);
         }
+        if (start == null) start = new Point(1, 1);
+        if (exit == null) exit = defaultExit(maze);
 
-        return mz;
+        // The sessions share the maze, so one distance field serves every game on it
+        DistanceField field = DistanceField.of(maze, exit);
+        int cells = maze.rows * maze.cols;
+        LabyrinthInfo info = new LabyrinthInfo(name, maze.rows, maze.cols, start, exit, walls, cells - walls,
+            field.distance(start.x, start.y), hex(digest.digest()));
+
+        distances.put(maze, field);
+        infoByMaze.put(maze, info);
+        return info;
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >>> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @param name a labirintus fájl neve
+     * @return a betöltéskor kiszámolt adatai, vagy null, ha nincs ilyen fájl
+     */
+    public LabyrinthInfo info(String name) {
+        return infoByName != null ? infoByName.get(name) : null;
+    }
+
+    /**
+     * @return a betöltött labirintus fájlok adatai a betöltés sorrendjében
+     */
+    public List<LabyrinthInfo> list() {
+        return infoByName != null ? new ArrayList<>(infoByName.values()) : List.of();
+    }
+
+    /**
+     * A betöltött labirintus csak olvasható nézete. A munkamenetek nem
+     * módosítják a labirintust, ezért mind ugyanazt a példányt kapják.
+     *
+     * @return a betöltött labirintus
+     */
+    public Maze getLabyrinth() {
+        return maze;
     }
 
     @Override
-    public int[][] generate(String seed) {
+    public Maze generate(String seed) {
         var lab = cache.getOrDefault(seed, null);
 
         return lab != null
@@ -82,45 +246,58 @@ public class LabyrinthLite implements LabyrinthGenerator {
     }
 
     @Override
-    public Point getStart(int[][] labyrinth) {
-        int y = 0;
-        for (int[] row : labyrinth) {
-            int x = 0;
-            for (int cell : row) {
-                if (cell == 5){
-                    Point end = new Point(x, y);
-                    System.out.println("START: " + end.x + " " + end.y);
-                    return end;
-                }
-                x++;
-            }
-            y++;
+    public DistanceField distances(Maze labyrinth) {
+        DistanceField field = distances != null ? distances.get(labyrinth) : null;
+        return field != null ? field : DistanceField.of(labyrinth, getExit(labyrinth));
+    }
+
+    /**
+     * A betöltött labirintusoké a betöltéskor kiszámolt kezdőpont, a többiben
+     * megkeresi.
+     */
+    @Override
+    public Point getStart(Maze labyrinth) {
+        LabyrinthInfo info = infoByMaze != null ? infoByMaze.get(labyrinth) : null;
+        if (info != null) {
+            return info.start();
         }
-        return new Point(1, 1);
+        Point p = find(labyrinth, 5);
+        return p != null ? p : new Point(1, 1);
     }
 
+    /**
+     * A betöltött labirintusoké a betöltéskor kiszámolt kijárat, a többiben
+     * megkeresi.
+     */
     @Override
-    public Point getExit(int[][] labyrinth) {
-        int y = 0;
-        for (int[] row : labyrinth) {
-            int x = 0;
-            for (int cell : row) {
-                if (cell == 3){
-                    Point end = new Point(x, y);
-                    System.out.println("END: " + end.x + " " + end.y);
-                    return end;
+    public Point getExit(Maze labyrinth) {
+        LabyrinthInfo info = infoByMaze != null ? infoByMaze.get(labyrinth) : null;
+        if (info != null) {
+            return info.exit();
+        }
+        Point p = find(labyrinth, 3);
+        return p != null ? p : defaultExit(labyrinth);
+    }
+
+    private static Point find(Maze labyrinth, int value) {
+        for (int y = 0; y < labyrinth.rows; y++) {
+            for (int x = 0; x < labyrinth.cols; x++) {
+                if (labyrinth.get(x, y) == value) {
+                    return new Point(x, y);
                 }
-                x++;
             }
-            y++;
         }
-        return new Point(rows - 2, cols - 2);
+        return null;
+    }
+
+    private static Point defaultExit(Maze labyrinth) {
+        return new Point(labyrinth.cols - 2, labyrinth.rows - 2);
     }
 
     @Override
-    public String format(int[][] labyrinth) {
+    public String format(Maze labyrinth) {
         StringBuilder sb = new StringBuilder();
-        for (int[] row : labyrinth) {
+        for (int[] row : labyrinth.toArray()) {
             for (int cell : row) {
                 switch (cell) {
                     case 0:  sb.append("# "); break;
@@ -0,0 +1,83 @@
+package hu.ppke.itk.java.labyrinthv09.server;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Zármentes, HDR jellegű hisztogram nanoszekundumos időtartamokhoz. Minden
+ * kettőhatvány tartományt {@code 2^SUB_BITS} egyforma részre oszt, így a
+ * rögzítés egy tömbelem növelése, a becsült kvantilisek hibája pedig
+ * legfeljebb {@code 1 / 2^SUB_BITS}, az értékek nagyságrendjétől függetlenül.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+
+    static int bucket(long value) {
+        if (value < SUB_BUCKETS) return (int) Math.max(value, 0);
+
+        int exp = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exp - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exp - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * @return a vödörbe eső legnagyobb érték
+     */
+    static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) return bucket;
+
+        int exp = bucket / SUB_BUCKETS + SUB_BITS - 1;
+        long sub = bucket % SUB_BUCKETS;
+        long width = 1L << (exp - SUB_BITS);
+        return ((SUB_BUCKETS + sub) << (exp - SUB_BITS)) + width - 1;
+    }
+
+    public void record(long nanos) {
+        counts.incrementAndGet(bucket(nanos));
+        count.increment();
+        sum.add(nanos);
+    }
+
+    public long count() {
+        return count.sum();
+    }
+
+    public long sum() {
+        return sum.sum();
+    }
+
+    /**
+     * Egyszerre több kvantilist becsül egyetlen bejárással. Egyidejű
+     * rögzítések mellett az eredmény egy közelítő pillanatkép.
+     *
+     * @param quantiles növekvő sorrendben, 0 és 1 között
+     * @return a kvantilisek felső becslése nanoszekundumban, üres hisztogramra 0
+     */
+    public long[] quantiles(double... quantiles) {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+
+        long[] result = new long[quantiles.length];
+        if (total == 0) return result;
+
+        long seen = 0;
+        int q = 0;
+        for (int i = 0; i < BUCKETS && q < quantiles.length; i++) {
+            seen += snapshot[i];
+            while (q < quantiles.length && seen >= Math.ceil(quantiles[q] * total)) {
+                result[q++] = upperBound(i);
+            }
+        }
+        return result;
+    }
+}
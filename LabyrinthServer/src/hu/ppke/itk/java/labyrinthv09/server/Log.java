@@ -0,0 +1,237 @@
+package hu.ppke.itk.java.labyrinthv09.server;
+
+import java.io.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Aszinkron naplózás. A hívó szál csak beteszi az üzenetet egy rögzített
+ * méretű, zármentes gyűrűs pufferbe, a kiírást egy háttérszál végzi a
+ * beállított {@link Sink}-be. Ha a puffer megtelt, az üzenet elveszik, ezt
+ * a háttérszál jelzi. A kikapcsolt szintű üzenetek semmibe sem kerülnek,
+ * de a hívónak érdemes {@link #isEnabled}-del védenie az üzenet összeállítását.
+ * <p>
+ * Üres pufferrel a háttérszál időkorlát nélkül parkol. A hívó csak akkor
+ * ébreszti fel, ha a szál jelezte, hogy alszik, így a gyors út zármentes marad.
+ */
+public final class Log {
+    public enum Level { DEBUG, INFO, WARN, ERROR, OFF }
+
+    /**
+     * A naplósorok célja. Csak a háttérszál hívja.
+     */
+    public interface Sink {
+        void write(Level level, String source, String message) throws IOException;
+        void flush() throws IOException;
+    }
+
+    /**
+     * Soronként {@code [forrás] üzenet} formában a standard kimenetre ír.
+     */
+    public static class StdoutSink implements Sink {
+        private final Writer out = new BufferedWriter(new OutputStreamWriter(System.out), 1 << 16);
+
+        @Override
+        public void write(Level level, String source, String message) throws IOException {
+            out.write('[');
+            out.write(source);
+            out.write("] ");
+            out.write(message);
+            out.write('\n');
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+    }
+
+    static final int CAPACITY = 1 << 14;
+
+    private static volatile Level level = Level.INFO;
+    private static volatile Sink sink = new StdoutSink();
+
+    private static final Ring ring = new Ring(CAPACITY);
+    private static final AtomicLong dropped = new AtomicLong();
+
+    private static final Thread writer = new Thread(Log::drainLoop, "log-writer");
+    private static volatile boolean sleeping;
+
+    static {
+        writer.setDaemon(true);
+        writer.start();
+
+        Runtime.getRuntime().addShutdownHook(new Thread(Log::drain, "log-flush"));
+    }
+
+    private Log() {}
+
+    public static void setLevel(Level level) {
+        Log.level = level;
+    }
+
+    public static Level getLevel() {
+        return level;
+    }
+
+    public static void setSink(Sink sink) {
+        Log.sink = sink;
+    }
+
+    public static boolean isEnabled(Level level) {
+        return level.compareTo(Log.level) >= 0 && level != Level.OFF;
+    }
+
+    public static void log(Level level, String source, String message) {
+        if (!isEnabled(level)) return;
+
+        if (!ring.offer(level, source, message)) {
+            dropped.incrementAndGet();
+        }
+        if (sleeping) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    public static void debug(String source, String message) {
+        log(Level.DEBUG, source, message);
+    }
+
+    public static void info(String source, String message) {
+        log(Level.INFO, source, message);
+    }
+
+    public static void warn(String source, String message) {
+        log(Level.WARN, source, message);
+    }
+
+    public static void error(String source, String message) {
+        log(Level.ERROR, source, message);
+    }
+
+    /**
+     * @return az eddig eldobott üzenetek száma
+     */
+    public static long droppedCount() {
+        return dropped.get();
+    }
+
+    private static void drainLoop() {
+        while (true) {
+            if (drain()) continue;
+
+            sleeping = true;
+            // An offer between the drain and the flag saw no sleeper, so look once more
+            if (!pending()) {
+                LockSupport.park();
+            }
+            sleeping = false;
+        }
+    }
+
+    /**
+     * @return van-e kiírásra váró üzenet vagy eldobásjelzés
+     */
+    private static synchronized boolean pending() {
+        return !ring.isEmpty() || dropped.get() > 0;
+    }
+
+    /**
+     * Kiírja a pufferben lévő üzeneteket.
+     *
+     * @return volt-e kiírt üzenet
+     */
+    private static synchronized boolean drain() {
+        Sink out = sink;
+        boolean any = false;
+        try {
+            while (ring.poll(out)) {
+                any = true;
+            }
+
+            long lost = dropped.getAndSet(0);
+            if (lost > 0) {
+                out.write(Level.WARN, "LOG", lost + " messages dropped");
+                any = true;
+            }
+
+            if (any) out.flush();
+        }
+        catch (IOException e) {
+            // Nowhere left to report it
+        }
+        return any;
+    }
+
+    /**
+     * Korlátos, több író és egy olvasó szálas gyűrűs puffer. Minden rekesz
+     * sorszáma jelzi, hogy írható ({@code seq == pos}) vagy olvasható
+     * ({@code seq == pos + 1}) az adott pozíción; a rekeszeket újrahasznosítja,
+     * így üzenetenként nem foglal memóriát.
+     */
+    private static final class Ring {
+        private static final class Slot {
+            volatile long seq;
+            Level level;
+            String source;
+            String message;
+        }
+
+        private final Slot[] slots;
+        private final int mask;
+        private final AtomicLong tail = new AtomicLong();
+        private long head;
+
+        Ring(int capacity) {
+            slots = new Slot[capacity];
+            mask = capacity - 1;
+            for (int i = 0; i < capacity; i++) {
+                slots[i] = new Slot();
+                slots[i].seq = i;
+            }
+        }
+
+        boolean offer(Level level, String source, String message) {
+            Slot slot;
+            long pos;
+            while (true) {
+                pos = tail.get();
+                slot = slots[(int) pos & mask];
+                long diff = slot.seq - pos;
+
+                if (diff == 0) {
+                    if (tail.compareAndSet(pos, pos + 1)) break;
+                }
+                else if (diff < 0) {
+                    return false;
+                }
+            }
+
+            slot.level = level;
+            slot.source = source;
+            slot.message = message;
+            slot.seq = pos + 1;
+            return true;
+        }
+
+        boolean isEmpty() {
+            return slots[(int) head & mask].seq != head + 1;
+        }
+
+        boolean poll(Sink out) throws IOException {
+            Slot slot = slots[(int) head & mask];
+            if (slot.seq != head + 1) return false;
+
+            try {
+                out.write(slot.level, slot.source, slot.message);
+            }
+            finally {
+                slot.source = null;
+                slot.message = null;
+                slot.seq = head + slots.length;
+                head++;
+            }
+            return true;
+        }
+    }
+}
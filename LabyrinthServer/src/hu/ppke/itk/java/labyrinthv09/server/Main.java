@@ -1,7 +1,18 @@
 package hu.ppke.itk.java.labyrinthv09.server;
 
+import java.io.IOException;
+
 public class Main {
-    static final String USAGE = "server <row count> <column count>";
+    static final String USAGE = "server <row count> <column count>"
+        + " [--mode=platform|pooled|virtual|nio] [--workers=<count>]"
+        + " [--maze-cache=<MiB>] [--log-level=debug|info|warn|error|off]"
+        + " [--tcp-nodelay=true|false] [--send-buffer=<bytes>] [--receive-buffer=<bytes>]"
+        + " [--max-look-radius=<cells>] [--session-timeout=<seconds>]"
+        + " [--max-connections=<count>] [--backlog=<count>]"
+        + " [--idle-timeout=<seconds>] [--read-timeout=<seconds>]"
+        + " [--metrics-port=<port>]";
+
+    static final int DEFAULT_POOL_SIZE = 256;
 
     public static void main(String[] args) {
         if (args.length < 2) {
@@ -9,6 +20,10 @@ public class Main {
             System.exit(1);
         }
 
+        String mode = "platform";
+        int workers = -1;
+        int metricsPort = -1;
+
         try {
             int rows = Integer.parseInt(args[0]);
             int cols = Integer.parseInt(args[1]);
@@ -20,13 +35,165 @@ public class Main {
 
             Session.LABYRINTH_ROWS = rows;
             Session.LABYRINTH_COLS = cols;
+
+            for (int i = 2; i < args.length; i++) {
+                if (args[i].startsWith("--mode=")) {
+                    mode = args[i].substring("--mode=".length());
+                }
+                else if (args[i].startsWith("--workers=")) {
+                    workers = Integer.parseInt(args[i].substring("--workers=".length()));
+                    if (workers <= 0) {
+                        System.out.println("Worker count must be positive.");
+                        System.exit(1);
+                    }
+                }
+                else if (args[i].startsWith("--maze-cache=")) {
+                    long mib = Long.parseLong(args[i].substring("--maze-cache=".length()));
+                    if (mib < 0) {
+                        System.out.println("Maze cache size can't be negative.");
+                        System.exit(1);
+                    }
+                    Session.MAZE_CACHE_BYTES = mib << 20;
+                }
+                else if (args[i].startsWith("--log-level=")) {
+                    String level = args[i].substring("--log-level=".length());
+                    try {
+                        Log.setLevel(Log.Level.valueOf(level.toUpperCase()));
+                    }
+                    catch (IllegalArgumentException e) {
+                        System.out.println(USAGE);
+                        System.exit(1);
+                    }
+                }
+                else if (args[i].startsWith("--tcp-nodelay=")) {
+                    String value = args[i].substring("--tcp-nodelay=".length());
+                    if (!value.equals("true") && !value.equals("false")) {
+                        System.out.println(USAGE);
+                        System.exit(1);
+                    }
+                    Server.TCP_NODELAY = Boolean.parseBoolean(value);
+                }
+                else if (args[i].startsWith("--send-buffer=")) {
+                    Server.SEND_BUFFER_SIZE = Integer.parseInt(args[i].substring("--send-buffer=".length()));
+                    if (Server.SEND_BUFFER_SIZE < 0) {
+                        System.out.println("Socket buffer size can't be negative.");
+                        System.exit(1);
+                    }
+                }
+                else if (args[i].startsWith("--receive-buffer=")) {
+                    Server.RECEIVE_BUFFER_SIZE = Integer.parseInt(args[i].substring("--receive-buffer=".length()));
+                    if (Server.RECEIVE_BUFFER_SIZE < 0) {
+                        System.out.println("Socket buffer size can't be negative.");
+                        System.exit(1);
+                    }
+                }
+                else if (args[i].startsWith("--max-look-radius=")) {
+                    Session.MAX_LOOK_RADIUS = Integer.parseInt(args[i].substring("--max-look-radius=".length()));
+                    if (Session.MAX_LOOK_RADIUS < 0) {
+                        System.out.println("Look radius can't be negative.");
+                        System.exit(1);
+                    }
+                }
+                else if (args[i].startsWith("--session-timeout=")) {
+                    long seconds = Long.parseLong(args[i].substring("--session-timeout=".length()));
+                    if (seconds <= 0) {
+                        System.out.println("Session timeout must be positive.");
+                        System.exit(1);
+                    }
+                    Session.registry = new SessionRegistry(seconds * 1000);
+                }
+                else if (args[i].startsWith("--max-connections=")) {
+                    Server.MAX_CONNECTIONS = Integer.parseInt(args[i].substring("--max-connections=".length()));
+                    if (Server.MAX_CONNECTIONS <= 0) {
+                        System.out.println("Connection limit must be positive.");
+                        System.exit(1);
+                    }
+                }
+                else if (args[i].startsWith("--backlog=")) {
+                    Server.ACCEPT_BACKLOG = Integer.parseInt(args[i].substring("--backlog=".length()));
+                    if (Server.ACCEPT_BACKLOG <= 0) {
+                        System.out.println("Accept backlog must be positive.");
+                        System.exit(1);
+                    }
+                }
+                else if (args[i].startsWith("--idle-timeout=")) {
+                    long seconds = Long.parseLong(args[i].substring("--idle-timeout=".length()));
+                    if (seconds < 0) {
+                        System.out.println("Timeout can't be negative.");
+                        System.exit(1);
+                    }
+                    // Socket timeouts are int milliseconds
+                    if (seconds > Integer.MAX_VALUE / 1000) {
+                        System.out.println("Timeout can't be more than " + Integer.MAX_VALUE / 1000 + " seconds.");
+                        System.exit(1);
+                    }
+                    Server.IDLE_TIMEOUT_MILLIS = (int) seconds * 1000;
+                }
+                else if (args[i].startsWith("--read-timeout=")) {
+                    long seconds = Long.parseLong(args[i].substring("--read-timeout=".length()));
+                    if (seconds < 0) {
+                        System.out.println("Timeout can't be negative.");
+                        System.exit(1);
+                    }
+                    // Socket timeouts are int milliseconds
+                    if (seconds > Integer.MAX_VALUE / 1000) {
+                        System.out.println("Timeout can't be more than " + Integer.MAX_VALUE / 1000 + " seconds.");
+                        System.exit(1);
+                    }
+                    Server.READ_TIMEOUT_MILLIS = (int) seconds * 1000;
+                }
+                else if (args[i].startsWith("--metrics-port=")) {
+                    metricsPort = Integer.parseInt(args[i].substring("--metrics-port=".length()));
+                    if (metricsPort <= 0 || metricsPort > 65535) {
+                        System.out.println("Invalid metrics port.");
+                        System.exit(1);
+                    }
+                }
+                else {
+                    System.out.println(USAGE);
+                    System.exit(1);
+                }
+            }
         }
         catch (NumberFormatException e) {
             System.out.println(USAGE);
             System.exit(1);
         }
 
-        Server s = new Server();
-        s.run(6900);
+        if (metricsPort > 0) {
+            try {
+                Metrics.serve(metricsPort);
+            }
+            catch (IOException e) {
+                System.out.println("Failed to start metrics endpoint: " + e.getMessage());
+                System.exit(1);
+            }
+        }
+
+        switch (mode) {
+            case "platform":
+                new Server().run(6900);
+                break;
+            case "pooled":
+                if (workers < 0) workers = DEFAULT_POOL_SIZE;
+                new Server(Server.pooledExecutor(workers)).run(6900);
+                break;
+            case "virtual":
+                try {
+                    new Server(Server.virtualThreadExecutor()).run(6900);
+                }
+                catch (UnsupportedOperationException e) {
+                    System.out.println(e.getMessage());
+                    System.exit(1);
+                }
+                break;
+            case "nio":
+                if (workers < 0) workers = Runtime.getRuntime().availableProcessors();
+                new NioServer(workers).run(6900);
+                break;
+            default:
+                System.out.println(USAGE);
+                System.exit(1);
+        }
     }
 }
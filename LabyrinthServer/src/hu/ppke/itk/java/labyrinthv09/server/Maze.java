@@ -0,0 +1,192 @@
+package hu.ppke.itk.java.labyrinthv09.server;
+
+import hu.ppke.itk.java.labyrinthv09.LabyrinthProtos.ViewElement;
+
+import java.nio.LongBuffer;
+
+/**
+ * Tömörített labirintus: egy cella csak {@code WALL}, {@code WAY}, {@code EXIT}
+ * vagy {@code START} lehet, ezért cellánként 2 bitet tárol egy {@code long[]}
+ * tömbben. A cellák értéke kifelé a {@link ViewElement} számértéke.
+ * <p>
+ * A {@link #readOnly()} nézet ugyanazokat a cellákat látja, de nem írható,
+ * így egy labirintus másolás nélkül megosztható a munkamenetek között.
+ * A cellák egy {@link LongBuffer}-ben vannak, ami fájlba leképezett memória
+ * is lehet (lásd {@link LabyrinthFile}).
+ */
+public class Maze {
+    private static final int CELLS_PER_WORD = 32;
+    private static final int[] VALUES = {
+        ViewElement.WALL_VALUE,
+        ViewElement.WAY_VALUE,
+        ViewElement.EXIT_VALUE,
+        ViewElement.START_VALUE
+    };
+
+    public final int rows;
+    public final int cols;
+
+    private final LongBuffer cells;
+    private final boolean readOnly;
+
+    /**
+     * Létrehoz egy csupa falból álló labirintust.
+     *
+     * @param rows a cellák sorainak száma
+     * @param cols a cellák oszlopainak száma
+     */
+    public Maze(int rows, int cols) {
+        this.rows = rows;
+        this.cols = cols;
+        this.cells = LongBuffer.wrap(new long[words(rows, cols)]);
+        this.readOnly = false;
+    }
+
+    /**
+     * @param rows a cellák sorainak száma
+     * @param cols a cellák oszlopainak száma
+     * @param cells a tömörített cellák, legalább {@link #words} hosszan
+     * @param readOnly csak olvasható-e a labirintus
+     */
+    Maze(int rows, int cols, LongBuffer cells, boolean readOnly) {
+        this.rows = rows;
+        this.cols = cols;
+        this.cells = cells;
+        this.readOnly = readOnly;
+    }
+
+    /**
+     * Tömöríti a 2D tömbként megadott labirintust.
+     *
+     * @param labyrinth a labirintus soronként
+     * @return a tömörített labirintus
+     */
+    public static Maze of(int[][] labyrinth) {
+        int rows = labyrinth.length;
+        int cols = rows > 0 ? labyrinth[0].length : 0;
+
+        Maze maze = new Maze(rows, cols);
+        for (int y = 0; y < rows; y++) {
+            for (int x = 0; x < cols; x++) {
+                maze.set(x, y, labyrinth[y][x]);
+            }
+        }
+        return maze;
+    }
+
+    /**
+     * @return a {@code rows * cols} cella tárolásához szükséges {@code long}ok száma
+     */
+    static int words(int rows, int cols) {
+        return (int) (((long) rows * cols + CELLS_PER_WORD - 1) / CELLS_PER_WORD);
+    }
+
+    /**
+     * @return a tömörített cellák csak olvasható nézete, a tömb elejére állítva
+     */
+    LongBuffer words() {
+        LongBuffer words = cells.asReadOnlyBuffer();
+        words.clear();
+        return words;
+    }
+
+    private static int code(int value) {
+        switch (value) {
+            case ViewElement.WALL_VALUE:  return 0;
+            case ViewElement.WAY_VALUE:   return 1;
+            case ViewElement.EXIT_VALUE:  return 2;
+            case ViewElement.START_VALUE: return 3;
+            default:
+                throw new IllegalArgumentException("Invalid cell value: " + value);
+        }
+    }
+
+    /**
+     * @param idx a cella sorfolytonos indexe
+     * @return a cella értéke
+     */
+    int get(int idx) {
+        long word = cells.get(idx / CELLS_PER_WORD);
+        int shift = (idx % CELLS_PER_WORD) * 2;
+        return VALUES[(int) (word >>> shift) & 3];
+    }
+
+    /**
+     * @param idx a cella sorfolytonos indexe
+     * @param value a cella új értéke
+     */
+    void set(int idx, int value) {
+        if (readOnly) {
+            throw new UnsupportedOperationException("Maze is read-only.");
+        }
+
+        int word = idx / CELLS_PER_WORD;
+        int shift = (idx % CELLS_PER_WORD) * 2;
+        cells.put(word, (cells.get(word) & ~(3L << shift)) | ((long) code(value) << shift));
+    }
+
+    /**
+     * @return a cella értéke a {@code (x, y)} pozíción
+     */
+    public int get(int x, int y) {
+        return get(y * cols + x);
+    }
+
+    /**
+     * Beállítja a cella értékét a {@code (x, y)} pozíción.
+     */
+    public void set(int x, int y, int value) {
+        set(y * cols + x, value);
+    }
+
+    /**
+     * @return a labirintuson belül van-e a {@code (x, y)} pozíció
+     */
+    public boolean contains(int x, int y) {
+        return x >= 0 && y >= 0 && x < cols && y < rows;
+    }
+
+    public boolean isWall(int x, int y) {
+        return get(x, y) == ViewElement.WALL_VALUE;
+    }
+
+    /**
+     * @return a labirintus független, írható másolata
+     */
+    public Maze copy() {
+        long[] words = new long[words(rows, cols)];
+        words().get(words);
+        return new Maze(rows, cols, LongBuffer.wrap(words), false);
+    }
+
+    /**
+     * Csak olvasható nézet ugyanazokra a cellákra. Megosztás előtt a
+     * készítőnek el kell engednie az írható példányt.
+     *
+     * @return a labirintus csak olvasható nézete
+     */
+    public Maze readOnly() {
+        return readOnly ? this : new Maze(rows, cols, cells, true);
+    }
+
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    /**
+     * Kibontja a labirintust 2D tömbbé, soronként.
+     *
+     * @return a labirintus celláinak értékei
+     */
+    public int[][] toArray() {
+        int[][] mz = new int[rows][cols];
+
+        for (int y = 0; y < rows; y++) {
+            for (int x = 0; x < cols; x++) {
+                mz[y][x] = get(x, y);
+            }
+        }
+
+        return mz;
+    }
+}
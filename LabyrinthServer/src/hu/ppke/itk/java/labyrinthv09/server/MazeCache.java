@@ -0,0 +1,155 @@
+package hu.ppke.itk.java.labyrinthv09.server;
+
+import hu.ppke.itk.java.labyrinthv09.Utils;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * A {@link Labyrinth} által generált labirintusokat tároló LRU gyorsítótár,
+ * {@code (seed, rows, cols)} kulccsal. Minden labirintus mellett a
+ * távolságmezője is itt van, ez generáláskor készül el. A tárolt labirintusok
+ * és távolságmezők összmérete legfeljebb {@code maxBytes}, efölött a
+ * legrégebben használtak kerülnek ki.
+ * Ha ugyanarra a kulcsra egyszerre több kérés érkezik, csak az első generál,
+ * a többi megvárja az eredményét.
+ */
+public class MazeCache implements LabyrinthGenerator {
+    private record Key(long seed, int rows, int cols) {}
+
+    private final Labyrinth generator;
+    private final long maxBytes;
+
+    // Access ordered, so iteration starts with the least recently used entry
+    private final LinkedHashMap<Key, CompletableFuture<Prepared>> entries =
+        new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * @param generator a hiányzó labirintusokat elkészítő generátor
+     * @param maxBytes a tárolt labirintusok megengedett összmérete bájtban
+     */
+    public MazeCache(Labyrinth generator, long maxBytes) {
+        this.generator = generator;
+        this.maxBytes = maxBytes;
+    }
+
+    private static long sizeOf(Prepared prepared) {
+        Maze maze = prepared.maze();
+        return (long) Maze.words(maze.rows, maze.cols) * Long.BYTES + prepared.distances().sizeInBytes();
+    }
+
+    @Override
+    public Maze generate(String seed) {
+        return prepare(seed).maze();
+    }
+
+    @Override
+    public Prepared prepare(String seed) {
+        Key key = new Key(Utils.stringToSeed(seed), generator.rows, generator.cols);
+        CompletableFuture<Prepared> entry;
+        boolean owner = false;
+
+        synchronized (this) {
+            entry = entries.get(key);
+            if (entry != null) {
+                hits++;
+            }
+            else {
+                misses++;
+                entry = new CompletableFuture<>();
+                entries.put(key, entry);
+                owner = true;
+            }
+        }
+
+        if (owner) {
+            try {
+                Maze maze = generator.generate(seed).readOnly();
+                Prepared prepared = new Prepared(maze, generator.distances(maze));
+                entry.complete(prepared);
+                admit(key, prepared);
+                return prepared;
+            }
+            catch (RuntimeException | Error e) {
+                synchronized (this) {
+                    entries.remove(key, entry);
+                }
+                entry.completeExceptionally(e);
+                throw e;
+            }
+        }
+
+        try {
+            return entry.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for labyrinth.", e);
+        }
+        catch (ExecutionException e) {
+            throw new IllegalStateException("Labyrinth generation failed.", e.getCause());
+        }
+    }
+
+    private synchronized void admit(Key key, Prepared prepared) {
+        if (!entries.containsKey(key)) return;
+
+        bytes += sizeOf(prepared);
+
+        Iterator<Map.Entry<Key, CompletableFuture<Prepared>>> it = entries.entrySet().iterator();
+        while (bytes > maxBytes && it.hasNext()) {
+            var eldest = it.next();
+            var value = eldest.getValue();
+
+            // Entries still being generated have no size yet
+            if (!value.isDone()) continue;
+
+            bytes -= sizeOf(value.join());
+            it.remove();
+            evictions++;
+        }
+    }
+
+    public synchronized long hitCount() {
+        return hits;
+    }
+
+    public synchronized long missCount() {
+        return misses;
+    }
+
+    public synchronized long evictionCount() {
+        return evictions;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    @Override
+    public Point getStart(Maze labyrinth) {
+        return generator.getStart(labyrinth);
+    }
+
+    @Override
+    public Point getExit(Maze labyrinth) {
+        return generator.getExit(labyrinth);
+    }
+
+    @Override
+    public String format(Maze labyrinth) {
+        return generator.format(labyrinth);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("MazeCache[size=%d, bytes=%d, hits=%d, misses=%d, evictions=%d]",
+            entries.size(), bytes, hits, misses, evictions);
+    }
+}
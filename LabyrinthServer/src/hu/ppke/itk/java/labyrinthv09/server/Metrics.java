@@ -0,0 +1,204 @@
+package hu.ppke.itk.java.labyrinthv09.server;
+
+import hu.ppke.itk.java.labyrinthv09.LabyrinthProtos.Request;
+
+import com.sun.net.httpserver.HttpServer;
+import jdk.jfr.*;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A szerver mérőszámai: kéréstípusonkénti darabszám és késleltetés,
+ * labirintus generálási és betöltési idő, kapcsolatok, munkamenetek és
+ * átvitt bájtok. A rögzítés zármentes, a lekérdezés {@link #serve} után
+ * Prometheus szöveges formátumban érhető el a {@code /metrics} címen.
+ * A kérések, generálások és betöltések JFR eseményként is megjelennek.
+ */
+public final class Metrics {
+    private static final Request.SelectorCase[] REQUEST_TYPES = Request.SelectorCase.values();
+    private static final String[] REQUEST_NAMES = new String[REQUEST_TYPES.length];
+    private static final LatencyHistogram[] requests = new LatencyHistogram[REQUEST_TYPES.length];
+
+    static {
+        for (var type : REQUEST_TYPES) {
+            var field = Request.getDescriptor().findFieldByNumber(type.getNumber());
+            REQUEST_NAMES[type.ordinal()] = field != null ? field.getName() : "unknown";
+            requests[type.ordinal()] = new LatencyHistogram();
+        }
+    }
+
+    private static final double[] QUANTILES = { 0.5, 0.9, 0.99, 0.999 };
+
+    private static final LatencyHistogram generate = new LatencyHistogram();
+    private static final AtomicLong preloadNanos = new AtomicLong();
+    private static final AtomicLong preloadFiles = new AtomicLong();
+    private static final LongAdder bytesIn = new LongAdder();
+    private static final LongAdder bytesOut = new LongAdder();
+
+    private Metrics() {}
+
+    @Name("hu.ppke.itk.labyrinth.Request")
+    @Label("Labyrinth Request")
+    @Category("Labyrinth")
+    public static class RequestEvent extends Event {
+        @Label("Type")
+        public String type;
+
+        @Label("Session ID")
+        public String sessionId;
+    }
+
+    @Name("hu.ppke.itk.labyrinth.Generate")
+    @Label("Labyrinth Generation")
+    @Category("Labyrinth")
+    public static class GenerateEvent extends Event {
+        @Label("Rows")
+        public int rows;
+
+        @Label("Columns")
+        public int cols;
+    }
+
+    @Name("hu.ppke.itk.labyrinth.Preload")
+    @Label("Labyrinth Preload")
+    @Category("Labyrinth")
+    public static class PreloadEvent extends Event {
+        @Label("Files")
+        public int files;
+    }
+
+    static String requestName(Request.SelectorCase type) {
+        return REQUEST_NAMES[type.ordinal()];
+    }
+
+    static void recordRequest(Request.SelectorCase type, long nanos) {
+        requests[type.ordinal()].record(nanos);
+    }
+
+    static void recordGenerate(long nanos) {
+        generate.record(nanos);
+    }
+
+    static void recordPreload(long nanos, int files) {
+        preloadNanos.set(nanos);
+        preloadFiles.set(files);
+    }
+
+    static void bytesIn(long n) {
+        bytesIn.add(n);
+    }
+
+    static void bytesOut(long n) {
+        bytesOut.add(n);
+    }
+
+    /**
+     * Elindít egy HTTP szervert, amely a {@code /metrics} címen kiszolgálja
+     * a mérőszámokat. Csak a helyi gépről érhető el.
+     *
+     * @param port a figyelt port
+     * @throws IOException ha a port nem foglalható le
+     */
+    public static void serve(int port) throws IOException {
+        HttpServer http = HttpServer.create(
+            new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+
+        http.createContext("/metrics", exchange -> {
+            byte[] body;
+            try (StringWriter out = new StringWriter()) {
+                write(out);
+                body = out.toString().getBytes(StandardCharsets.UTF_8);
+            }
+
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        });
+        http.start();
+
+        Log.info(Server.LOG_SOURCE, "Metrics on http://localhost:" + port + "/metrics");
+    }
+
+    /**
+     * Kiírja a mérőszámokat Prometheus szöveges formátumban.
+     */
+    public static void write(Writer out) throws IOException {
+        out.write("# HELP labyrinth_request_seconds Time to handle a request, by request type.\n");
+        out.write("# TYPE labyrinth_request_seconds summary\n");
+        for (var type : REQUEST_TYPES) {
+            LatencyHistogram h = requests[type.ordinal()];
+            if (h.count() > 0) {
+                summary(out, "labyrinth_request_seconds", "type=\"" + requestName(type) + "\"", h);
+            }
+        }
+
+        out.write("# HELP labyrinth_generate_seconds Time to generate a seeded labyrinth.\n");
+        out.write("# TYPE labyrinth_generate_seconds summary\n");
+        summary(out, "labyrinth_generate_seconds", null, generate);
+
+        gauge(out, "labyrinth_preload_seconds", "Time the last preload of the labyrinth files took.",
+            seconds(preloadNanos.get()));
+        gauge(out, "labyrinth_preload_files", "Number of labyrinth files loaded by the last preload.",
+            preloadFiles.get());
+
+        gauge(out, "labyrinth_connections", "Open client connections.", Server.activeConnections());
+        gauge(out, "labyrinth_sessions", "Sessions in the registry, with or without a connection.",
+            Session.registry.size());
+        counter(out, "labyrinth_connections_rejected_total", "Connections turned away at capacity.",
+            Server.rejectedConnections());
+        counter(out, "labyrinth_connections_timed_out_total", "Connections closed by an idle or read timeout.",
+            Server.timedOutConnections());
+
+        counter(out, "labyrinth_received_bytes_total", "Request bytes received.", bytesIn.sum());
+        counter(out, "labyrinth_sent_bytes_total", "Response bytes sent.", bytesOut.sum());
+
+        if (Session.labyrinthGen instanceof MazeCache) {
+            MazeCache cache = (MazeCache) Session.labyrinthGen;
+            counter(out, "labyrinth_cache_hits_total", "Seeded labyrinths served from the cache.",
+                cache.hitCount());
+            counter(out, "labyrinth_cache_misses_total", "Seeded labyrinths generated.", cache.missCount());
+            counter(out, "labyrinth_cache_evictions_total", "Labyrinths evicted from the cache.",
+                cache.evictionCount());
+        }
+
+        counter(out, "labyrinth_log_dropped_total", "Log messages dropped because the buffer was full.",
+            Log.droppedCount());
+    }
+
+    private static String seconds(long nanos) {
+        return Double.toString(nanos / 1e9);
+    }
+
+    private static void summary(Writer out, String name, String labels, LatencyHistogram h)
+            throws IOException {
+        String prefix = labels != null ? labels + "," : "";
+        long[] values = h.quantiles(QUANTILES);
+
+        for (int i = 0; i < QUANTILES.length; i++) {
+            out.write(name + "{" + prefix + "quantile=\"" + QUANTILES[i] + "\"} " + seconds(values[i]) + "\n");
+        }
+
+        String suffix = labels != null ? "{" + labels + "}" : "";
+        out.write(name + "_sum" + suffix + " " + seconds(h.sum()) + "\n");
+        out.write(name + "_count" + suffix + " " + h.count() + "\n");
+    }
+
+    private static void gauge(Writer out, String name, String help, Object value) throws IOException {
+        out.write("# HELP " + name + " " + help + "\n");
+        out.write("# TYPE " + name + " gauge\n");
+        out.write(name + " " + value + "\n");
+    }
+
+    private static void counter(Writer out, String name, String help, long value) throws IOException {
+        out.write("# HELP " + name + " " + help + "\n");
+        out.write("# TYPE " + name + " counter\n");
+        out.write(name + " " + value + "\n");
+    }
+}
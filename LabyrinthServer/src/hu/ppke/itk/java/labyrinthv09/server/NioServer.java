@@ -0,0 +1,429 @@
+package hu.ppke.itk.java.labyrinthv09.server;
+
+import hu.ppke.itk.java.labyrinthv09.LabyrinthProtos.*;
+
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.InvalidProtocolBufferException;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Nem blokkoló szerver: egyetlen szál kezeli az összes kapcsolatot egy
+ * {@link Selector} segítségével, a kéréseket pedig egy kis méretű
+ * szálkészlet szolgálja ki. Egy tétlen kapcsolat így nem foglal szálat.
+ */
+public class NioServer {
+    static final int READ_BUFFER_SIZE = 512;
+    static final int MAX_MESSAGE_SIZE = 64 * 1024;
+    static final int WRITE_BATCH_SIZE = 16;
+    // Requests read but not yet answered on the wire, per connection; above this the connection is not read
+    static final int MAX_QUEUED_REQUESTS = 64;
+    static final long TIMEOUT_CHECK_MILLIS = 1000;
+
+    private static final String LOG_SOURCE = Server.LOG_SOURCE;
+
+    private final int workers;
+    private final Queue<Connection> pendingWrites = new ConcurrentLinkedQueue<>();
+
+    private Selector selector;
+    private ServerSocketChannel server;
+    private ExecutorService pool;
+
+    public NioServer(int workers) {
+        this.workers = workers;
+    }
+
+    void log(String message) {
+        Log.info(LOG_SOURCE, message);
+    }
+
+    public void run(int port) {
+        try {
+            selector = Selector.open();
+            server = ServerSocketChannel.open();
+            if (Server.RECEIVE_BUFFER_SIZE > 0) {
+                server.setOption(StandardSocketOptions.SO_RCVBUF, Server.RECEIVE_BUFFER_SIZE);
+            }
+            server.bind(new InetSocketAddress(port), Server.ACCEPT_BACKLOG);
+            server.configureBlocking(false);
+            server.register(selector, SelectionKey.OP_ACCEPT);
+            pool = Executors.newFixedThreadPool(workers);
+            log("OK. Awaiting connections on localhost:" + port
+                + " (nio, " + workers + " workers)");
+        }
+        catch (IOException e) {
+            log("Error: " + e.getMessage());
+            log("Failed to initialize server.");
+            return;
+        }
+
+        byte[] rejection = Server.rejection();
+        long lastTimeoutCheck = System.nanoTime();
+
+        try {
+            while (true) {
+                selector.select(TIMEOUT_CHECK_MILLIS);
+
+                Connection c;
+                while ((c = pendingWrites.poll()) != null) {
+                    c.enableWrite();
+                }
+
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+
+                    if (!key.isValid()) continue;
+
+                    if (key.isAcceptable()) {
+                        accept(rejection);
+                        continue;
+                    }
+
+                    c = (Connection) key.attachment();
+                    if (key.isReadable()) c.read();
+                    if (key.isValid() && key.isWritable()) c.write();
+                }
+
+                long now = System.nanoTime();
+                if (now - lastTimeoutCheck >= TimeUnit.MILLISECONDS.toNanos(TIMEOUT_CHECK_MILLIS)) {
+                    lastTimeoutCheck = now;
+                    for (SelectionKey key : selector.keys()) {
+                        if (key.attachment() instanceof Connection) {
+                            ((Connection) key.attachment()).checkTimeout(now);
+                        }
+                    }
+                }
+            }
+        }
+        catch (IOException e) {
+            log("Error: " + e.getMessage());
+            log("Selector failed.");
+        }
+        finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private void accept(byte[] rejection) throws IOException {
+        SocketChannel client = server.accept();
+        if (client == null) return;
+
+        log("Client connected");
+
+        if (!Server.tryAcquireConnection()) {
+            // Still blocking, and the rejection fits in the send buffer
+            try (client) {
+                client.write(ByteBuffer.wrap(rejection));
+            }
+            catch (IOException e) {
+                // The client is turned away either way
+            }
+            Log.warn(LOG_SOURCE, "Server is full, rejected client ("
+                + Server.rejectedConnections() + " so far)");
+            return;
+        }
+
+        client.configureBlocking(false);
+        Server.configure(client.socket());
+
+        Connection c = new Connection(client, new Session());
+        c.key = client.register(selector, SelectionKey.OP_READ, c);
+        log("Created session");
+    }
+
+    /**
+     * Beolvas egy varint hosszt a puffer aktuális pozíciójától.
+     *
+     * @param buf a beolvasott bájtok
+     * @return a hossz, vagy {@code -1}, ha a varint még nem érkezett meg teljesen
+     * @throws InvalidProtocolBufferException ha a varint hibás, vagy nem fér
+     *         el egy nemnegatív {@code int}-ben
+     */
+    static int readVarint(ByteBuffer buf) throws InvalidProtocolBufferException {
+        int result = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            if (!buf.hasRemaining()) return -1;
+
+            byte b = buf.get();
+            // The 5th byte holds bits 28-34, only 28-30 fit a non-negative int
+            if (shift == 28 && (b & 0xF8) != 0) break;
+
+            result |= (b & 0x7F) << shift;
+            if (b >= 0) return result;
+        }
+        throw new InvalidProtocolBufferException("Malformed message length.");
+    }
+
+    /**
+     * Egy kliens kapcsolata. A beérkező bájtokból kéréseket keretez, azokat
+     * sorrendben, egyszerre legfeljebb egy szálon adja át a munkamenetnek,
+     * a válaszokat pedig a kimeneti sorba teszi. Ha a kliens a válaszok
+     * olvasása nélkül küldi a kéréseket, {@link #MAX_QUEUED_REQUESTS}
+     * megválaszolatlan kérés után a kapcsolatot nem olvassa tovább, amíg a
+     * válaszok el nem fogynak.
+     */
+    private class Connection {
+        private final SocketChannel channel;
+        private final Session session;
+        private final Queue<Request> requests = new ConcurrentLinkedQueue<>();
+        private final Queue<ByteBuffer> responses = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean busy = new AtomicBoolean();
+        // Framed requests whose response has not been written out completely
+        private final AtomicInteger queued = new AtomicInteger();
+        private final ByteBuffer[] gather = new ByteBuffer[WRITE_BATCH_SIZE];
+
+        private SelectionKey key;
+        private ByteBuffer in = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        private volatile boolean closing;
+
+        // Only touched by the selector thread
+        private long lastActivity = System.nanoTime();
+        private long readStarted;
+        // When the queued responses last stopped draining, 0 if nothing is waiting to be written
+        private long writeStarted;
+
+        Connection(SocketChannel channel, Session session) {
+            this.channel = channel;
+            this.session = session;
+            session.setTransportCloser(this::closeLater);
+        }
+
+        /**
+         * Bontja a kapcsolatot a selector szálon, ha a munkamenetét átvette
+         * egy másik kapcsolat. Bármelyik szálról hívható.
+         */
+        private void closeLater() {
+            closing = true;
+            pendingWrites.add(this);
+            selector.wakeup();
+        }
+
+        void read() {
+            try {
+                if (!in.hasRemaining()) {
+                    ByteBuffer bigger = ByteBuffer.allocate(in.capacity() * 2);
+                    in.flip();
+                    bigger.put(in);
+                    in = bigger;
+                }
+
+                int n = channel.read(in);
+                if (n < 0) {
+                    session.log("Unexpected end of input. Close connection");
+                    close();
+                    return;
+                }
+                lastActivity = System.nanoTime();
+                Metrics.bytesIn(n);
+
+                in.flip();
+                while (true) {
+                    int start = in.position();
+                    int length = readVarint(in);
+
+                    if (length > MAX_MESSAGE_SIZE) {
+                        throw new InvalidProtocolBufferException("Message too large.");
+                    }
+                    if (length < 0 || in.remaining() < length) {
+                        in.position(start);
+                        break;
+                    }
+
+                    ByteBuffer frame = in.slice();
+                    frame.limit(length);
+                    in.position(in.position() + length);
+
+                    requests.add(Request.parseFrom(frame));
+                    queued.incrementAndGet();
+                }
+                in.compact();
+
+                if (queued.get() >= MAX_QUEUED_REQUESTS) {
+                    key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+                }
+
+                if (in.position() == 0) readStarted = 0;
+                else if (readStarted == 0) readStarted = lastActivity;
+
+                dispatch();
+            }
+            catch (IOException e) {
+                session.log("Error: " + e.getMessage());
+                session.log("Error during communication");
+                close();
+            }
+        }
+
+        private void dispatch() {
+            if (!requests.isEmpty() && busy.compareAndSet(false, true)) {
+                pool.execute(this::process);
+            }
+        }
+
+        private void process() {
+            Request req;
+            try {
+                while (!closing && (req = requests.poll()) != null) {
+                    Response resp = session.handle(req);
+                    if (resp == null) {
+                        closing = true;
+                        requests.clear();
+                        break;
+                    }
+                    responses.add(encode(resp));
+
+                    if (session.isClosing()) {
+                        closing = true;
+                        requests.clear();
+                    }
+                }
+            }
+            catch (RuntimeException e) {
+                // Without this the connection would stay busy forever
+                session.log("Error: " + e);
+                session.log("Failed to process request");
+                closing = true;
+                requests.clear();
+            }
+
+            busy.set(false);
+            pendingWrites.add(this);
+            selector.wakeup();
+
+            if (!closing) dispatch();
+        }
+
+        private ByteBuffer encode(Response resp) {
+            int size = resp.getSerializedSize();
+            byte[] bytes = new byte[CodedOutputStream.computeUInt32SizeNoTag(size) + size];
+            try {
+                CodedOutputStream out = CodedOutputStream.newInstance(bytes);
+                out.writeUInt32NoTag(size);
+                resp.writeTo(out);
+                out.checkNoSpaceLeft();
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            Metrics.bytesOut(bytes.length);
+            return ByteBuffer.wrap(bytes);
+        }
+
+        void enableWrite() {
+            if (key.isValid() && (closing || !responses.isEmpty())) {
+                if (writeStarted == 0) writeStarted = System.nanoTime();
+                key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+            }
+        }
+
+        void write() {
+            try {
+                // Pipelined responses go out together in one gathering write
+                while (true) {
+                    int n = 0;
+                    for (ByteBuffer buf : responses) {
+                        if (n == gather.length) break;
+                        gather[n++] = buf;
+                    }
+                    if (n == 0) break;
+
+                    if (channel.write(gather, 0, n) > 0) {
+                        writeStarted = System.nanoTime();
+                    }
+                    boolean done = !gather[n - 1].hasRemaining();
+                    Arrays.fill(gather, 0, n, null);
+
+                    ByteBuffer buf;
+                    while ((buf = responses.peek()) != null && !buf.hasRemaining()) {
+                        responses.poll();
+                        queued.decrementAndGet();
+                    }
+                    if (!done) {
+                        key.interestOps(SelectionKey.OP_WRITE | readOps());
+                        return;
+                    }
+                }
+                // Requests still running on the pool count too, reading resumes once their responses are written
+                key.interestOps(readOps());
+                lastActivity = System.nanoTime();
+                writeStarted = 0;
+
+                if (closing && !busy.get()) {
+                    session.log("Closing session");
+                    close();
+                }
+            }
+            catch (IOException e) {
+                session.log("Error: " + e.getMessage());
+                session.log("Error during communication");
+                close();
+            }
+        }
+
+        /**
+         * @return {@code OP_READ}, ha a megválaszolatlan kérések száma a
+         *         korlát alatt van, különben 0
+         */
+        private int readOps() {
+            return queued.get() < MAX_QUEUED_REQUESTS ? SelectionKey.OP_READ : 0;
+        }
+
+        /**
+         * Bontja a kapcsolatot, ha a kliens túl régóta nem küld kérést, egy
+         * megkezdett kérést nem küld el időben, vagy a neki szóló válaszokat
+         * nem olvassa. Amíg a szerver dolgozik, nem számít tétlennek.
+         */
+        void checkTimeout(long now) {
+            boolean stalled = writeStarted != 0 && Server.READ_TIMEOUT_MILLIS > 0
+                && now - writeStarted > TimeUnit.MILLISECONDS.toNanos(Server.READ_TIMEOUT_MILLIS);
+            if (stalled) {
+                Server.timedOutConnections.incrementAndGet();
+                session.log("Client stopped reading responses, connection timed out");
+                close();
+                return;
+            }
+            if (busy.get() || !requests.isEmpty() || !responses.isEmpty()) return;
+
+            boolean timedOut = readStarted != 0
+                ? Server.READ_TIMEOUT_MILLIS > 0
+                    && now - readStarted > TimeUnit.MILLISECONDS.toNanos(Server.READ_TIMEOUT_MILLIS)
+                : Server.IDLE_TIMEOUT_MILLIS > 0
+                    && now - lastActivity > TimeUnit.MILLISECONDS.toNanos(Server.IDLE_TIMEOUT_MILLIS);
+
+            if (timedOut) {
+                Server.timedOutConnections.incrementAndGet();
+                session.log("Connection timed out");
+                close();
+            }
+        }
+
+        void close() {
+            if (!channel.isOpen()) return;
+
+            closing = true;
+            key.cancel();
+            try {
+                channel.close();
+                session.log("Closed socket");
+            }
+            catch (IOException e) {
+                session.log("Failed to close socket");
+            }
+            session.detach();
+            Server.releaseConnection();
+            session.log("Good-bye");
+        }
+    }
+}
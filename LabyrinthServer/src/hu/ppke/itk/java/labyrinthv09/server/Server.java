@@ -1,32 +1,193 @@
 package hu.ppke.itk.java.labyrinthv09.server;
 
+import hu.ppke.itk.java.labyrinthv09.LabyrinthProtos.*;
+
 import java.net.*;
 import java.io.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class Server {
+    static final String LOG_SOURCE = " SERVER ";
+
+    public static boolean TCP_NODELAY = true;
+    // 0 leaves the operating system default
+    public static int SEND_BUFFER_SIZE = 0;
+    public static int RECEIVE_BUFFER_SIZE = 0;
+
+    public static int MAX_CONNECTIONS = 1024;
+    public static int ACCEPT_BACKLOG = 128;
+    // Waiting for the next request, and for the rest of a started one; 0 waits forever
+    public static int IDLE_TIMEOUT_MILLIS = 5 * 60 * 1000;
+    public static int READ_TIMEOUT_MILLIS = 30 * 1000;
+
+    static final AtomicInteger activeConnections = new AtomicInteger();
+    static final AtomicLong rejectedConnections = new AtomicLong();
+    static final AtomicLong timedOutConnections = new AtomicLong();
+
     ServerSocket server;
 
+    private final Executor sessions;
+
+    /**
+     * @param sessions a munkamenetek {@code run()} ciklusát futtató végrehajtó
+     */
+    public Server(Executor sessions) {
+        this.sessions = sessions;
+    }
+
+    /**
+     * Minden munkamenetet külön platform szálon futtató szerver.
+     */
+    public Server() {
+        this(platformThreadExecutor());
+    }
+
+    /**
+     * @return végrehajtó, amely minden munkamenetnek új platform szálat indít
+     */
+    static Executor platformThreadExecutor() {
+        return task -> new Thread(task).start();
+    }
+
+    /**
+     * @param threads a készlet szálainak száma
+     * @return végrehajtó, amely legfeljebb {@code threads} munkamenetet
+     *         futtat egyszerre, a többi sorban áll
+     */
+    static ExecutorService pooledExecutor(int threads) {
+        return Executors.newFixedThreadPool(threads);
+    }
+
+    /**
+     * Minden munkamenetnek új virtuális szálat indító végrehajtó. A virtuális
+     * szálak a JDK 21-től érhetők el, ezért a gyárfüggvényt futásidőben keresi.
+     *
+     * @return a virtuális szálas végrehajtó
+     * @throws UnsupportedOperationException ha a futtató JDK nem támogatja
+     */
+    static ExecutorService virtualThreadExecutor() {
+        try {
+            var factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        }
+        catch (ReflectiveOperationException e) {
+            throw new UnsupportedOperationException(
+                "Virtual threads require JDK 21 or newer.", e);
+        }
+    }
+
     void log(String message) {
-        System.out.println("[ SERVER ] " + message);
+        Log.info(LOG_SOURCE, message);
+    }
+
+    public static int activeConnections() {
+        return activeConnections.get();
+    }
+
+    public static long rejectedConnections() {
+        return rejectedConnections.get();
+    }
+
+    public static long timedOutConnections() {
+        return timedOutConnections.get();
+    }
+
+    /**
+     * Lefoglal egy helyet egy új kapcsolatnak.
+     *
+     * @return van-e még hely, ha nincs, a kapcsolatot el kell utasítani
+     */
+    static boolean tryAcquireConnection() {
+        while (true) {
+            int active = activeConnections.get();
+            if (active >= MAX_CONNECTIONS) {
+                rejectedConnections.incrementAndGet();
+                return false;
+            }
+            if (activeConnections.compareAndSet(active, active + 1)) {
+                return true;
+            }
+        }
+    }
+
+    static void releaseConnection() {
+        activeConnections.decrementAndGet();
+    }
+
+    /**
+     * A betelt szerver válasza az új kapcsolatokra. A kliens első kérése a
+     * {@code startSessionRequest}, ezért erre a kérésre adott hibaként érkezik.
+     *
+     * @return a hossz előtaggal ellátott, elküldhető válasz
+     */
+    static byte[] rejection() {
+        Response resp = Response.newBuilder()
+            .setStartSessionResponse(startSessionResponse.newBuilder()
+                .setSessionId("")
+                .setStatus(Status.SESSION_ALLOCATION_ERROR)
+                .setCause(Session.ERR_SERVER_FULL))
+            .build();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            resp.writeDelimitedTo(out);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
     }
 
-    void run(int port) {
+    /**
+     * Beállítja egy elfogadott kapcsolaton a {@link #TCP_NODELAY} és a
+     * pufferméret opciókat. A kérés-válasz protokollnál a Nagle algoritmus
+     * a késleltetett nyugtázással együtt körönként több tíz ms várakozást okoz.
+     *
+     * @param socket a kliens kapcsolata
+     */
+    static void configure(Socket socket) {
         try {
-            server = new ServerSocket(port);
+            socket.setTcpNoDelay(TCP_NODELAY);
+            if (SEND_BUFFER_SIZE > 0) socket.setSendBufferSize(SEND_BUFFER_SIZE);
+            if (RECEIVE_BUFFER_SIZE > 0) socket.setReceiveBufferSize(RECEIVE_BUFFER_SIZE);
+        }
+        catch (SocketException e) {
+            Log.warn(LOG_SOURCE, "Failed to set socket options: " + e.getMessage());
+        }
+    }
+
+    public void run(int port) {
+        try {
+            server = new ServerSocket();
+            // Windows above 64 KiB must be requested before the connection is made
+            if (RECEIVE_BUFFER_SIZE > 0) server.setReceiveBufferSize(RECEIVE_BUFFER_SIZE);
+            server.bind(new InetSocketAddress(port), ACCEPT_BACKLOG);
             log("OK. Awaiting connections on localhost:" + port);
         }
         catch (IOException e) {
             log("Error: " + e.getMessage());
             log("Failed to initialize server.");
+            return;
         }
 
+        byte[] rejection = rejection();
+
         try {
             while (true) {
                 Socket client = server.accept();
                 log("Client connected");
+
+                if (!tryAcquireConnection()) {
+                    reject(client, rejection);
+                    continue;
+                }
+
+                configure(client);
                 Session s = new Session(client);
                 log("Created session");
-                s.start();
+                sessions.execute(s);
             }
         }
         catch (IOException e) {
@@ -34,4 +195,15 @@ public class Server {
             log("Failed to accept client.");
         }
     }
+
+    private void reject(Socket client, byte[] rejection) {
+        try (client) {
+            client.getOutputStream().write(rejection);
+        }
+        catch (IOException e) {
+            // The client is turned away either way
+        }
+        Log.warn(LOG_SOURCE, "Server is full, rejected client ("
+            + rejectedConnections.get() + " so far)");
+    }
 }
@@ -2,12 +2,19 @@ package hu.ppke.itk.java.labyrinthv09.server;
 
 import java.io.*;
 import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
 import java.util.List;
 
 import hu.ppke.itk.java.labyrinthv09.LabyrinthProtos.*;
 import hu.ppke.itk.java.labyrinthv09.Utils;
 
-public class Session extends Thread {
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.InvalidProtocolBufferException;
+
+public class Session implements Runnable {
     //region Error messages
     static final String ERR_USERNAME_MISSING = "Username cannot be empty.";
     static final String ERR_SESSION_MISMATCH = "Session ID mismatch.";
@@ -17,21 +24,40 @@ public class Session extends Thread {
     static final String ERR_BAD_LABYRINTH = "Labyrinth ID cannot be empty";
     static final String ERR_GAME_MISSING = "Game wasn't started.";
     static final String ERR_BAD_MOVE = "Can't move into wall";
+    static final String ERR_SESSION_UNKNOWN = "Unknown or expired session ID.";
+    static final String ERR_SERVER_FULL = "Server is at capacity.";
     //endregion
 
     public static int LABYRINTH_ROWS = 5;
     public static int LABYRINTH_COLS = 5;
+    public static long MAZE_CACHE_BYTES = 64L << 20;
+    public static int MAX_LOOK_RADIUS = 8;
+    static final long DEFAULT_SESSION_TIMEOUT_MILLIS = 5 * 60 * 1000;
+
+    static final int IO_BUFFER_SIZE = 8 * 1024;
 
     private final Socket socket;
     private boolean running;
     private boolean closing;
     private boolean hasSession;
 
-    private final String sessionId;
+    private String sessionId;
     private String labyrinthId;
+    private String resumeToken;
+
+    private static final SecureRandom TOKENS = new SecureRandom();
 
-    static LabyrinthGenerator labyrinthGen;
-    static LabyrinthGenerator labyrinthCache;
+    // Detached sessions wait in the registry until resumed or evicted
+    static SessionRegistry registry = new SessionRegistry(DEFAULT_SESSION_TIMEOUT_MILLIS);
+    private volatile boolean attached = true;
+    // Set once the session is evicted or taken over; the connection may not use it any more
+    private volatile boolean expired;
+    private volatile Runnable transportCloser;
+    private volatile long lastActive = System.nanoTime();
+    private Response lastResponse;
+
+    static volatile LabyrinthGenerator labyrinthGen;
+    static volatile LabyrinthLite labyrinthCache;
     static String[] labyrinthFiles = {
         "lab_r12c5.txt",
         "lab_r5c5.txt",
@@ -47,9 +73,14 @@ public class Session extends Thread {
         "reverse100.txt"
     };
 
-    int[][] labyrinth;
+    private byte[] frame = new byte[256];
+
+    Maze labyrinth;
     Point playerPos;
     Point exitPos;
+    // Successful moves in the current game, and the fewest that would have reached the exit from the start
+    long moves;
+    int optimalMoves;
 
     public Session(Socket socket) {
         this.socket = socket;
@@ -58,17 +89,98 @@ public class Session extends Thread {
         log("Create session");
     }
 
+    /**
+     * Socket nélküli munkamenet, ha a kapcsolatot a hívó kezeli
+     * (lásd {@link NioServer}).
+     */
+    Session() {
+        this(null);
+    }
+
     void log(String message) {
-        System.out.printf("[%s] %s\n", sessionId, message);
+        Log.info(sessionId, message);
+    }
+
+    /**
+     * Kérésenként ismétlődő, alapértelmezetten kikapcsolt napló.
+     */
+    void debug(String message) {
+        Log.debug(sessionId, message);
     }
 
-    void loop(InputStream in, OutputStream out) throws IOException {
-        Request req = Request.parseDelimitedFrom(in);
-        if (req == null) {
+    /**
+     * Beolvas egy kérést, és a rá adott választ a kimeneti pufferbe írja.
+     * A kliens több kérést is elküldhet a válaszok megvárása nélkül, ezeket
+     * sorban szolgálja ki; a puffer csak akkor ürül, ha nincs több beérkezett
+     * kérés, így az egyszerre érkezett kérések válaszai együtt mennek ki.
+     */
+    void loop(InputStream in, CodedOutputStream out) throws IOException {
+        socket.setSoTimeout(Server.IDLE_TIMEOUT_MILLIS);
+        int first = in.read();
+        if (first < 0) {
             log("Unexpected end of input. Close connection");
             running = false;
             return;
         }
+        socket.setSoTimeout(Server.READ_TIMEOUT_MILLIS);
+
+        int length = CodedInputStream.readRawVarint32(first, in);
+        if (length < 0 || length > NioServer.MAX_MESSAGE_SIZE) {
+            throw new InvalidProtocolBufferException("Message too large.");
+        }
+
+        if (frame.length < length) {
+            frame = new byte[Math.max(length, frame.length * 2)];
+        }
+        for (int n = 0; n < length; ) {
+            int read = in.read(frame, n, length - n);
+            if (read < 0) throw new EOFException("Truncated message.");
+            n += read;
+        }
+
+        Request req = Request.parseFrom(CodedInputStream.newInstance(frame, 0, length));
+        Metrics.bytesIn(CodedOutputStream.computeUInt32SizeNoTag(length) + length);
+
+        Response resp = handle(req);
+        if (resp == null) {
+            return;
+        }
+        int size = resp.getSerializedSize();
+        out.writeUInt32NoTag(size);
+        resp.writeTo(out);
+        Metrics.bytesOut(CodedOutputStream.computeUInt32SizeNoTag(size) + size);
+
+        if (closing || in.available() == 0) {
+            out.flush();
+        }
+
+        if (closing) running = false;
+    }
+
+    /**
+     * Kiszolgál egy beérkezett kérést, a választ nem küldi el. Az I/O-t a hívó
+     * végzi, így a blokkoló ({@link #run}) és a nem blokkoló ({@link NioServer})
+     * kiszolgálás ugyanezt a logikát használja. Ha a kérésnek van azonosítója,
+     * a válasz is megkapja.
+     *
+     * @param req a beérkezett kérés
+     * @return a kérésre adott válasz, vagy {@code null}, ha a munkamenetet
+     *         közben átvette egy másik kapcsolat; ekkor a kapcsolatot válasz
+     *         nélkül kell bontani
+     */
+    synchronized Response handle(Request req) {
+        if (expired) {
+            log("Request on an expired session, closing connection");
+            closing = true;
+            running = false;
+            return null;
+        }
+
+        long start = System.nanoTime();
+        lastActive = start;
+
+        var event = new Metrics.RequestEvent();
+        event.begin();
 
         Response resp;
         switch (req.getSelectorCase()) {
@@ -90,13 +202,92 @@ public class Session extends Thread {
             case CLOSESESSIONREQUEST:
                 resp = closeSession(req.getCloseSessionRequest());
                 break;
+            case MOVESEQUENCEREQUEST:
+                resp = moveSequence(req.getMoveSequenceRequest());
+                break;
+            case RESUMESESSIONREQUEST:
+                resp = resumeSession(req.getResumeSessionRequest());
+                break;
+            case LISTLABYRINTHSREQUEST:
+                resp = listLabyrinths(req.getListLabyrinthsRequest());
+                break;
             default:
                 resp = Response.newBuilder().build();
                 break;
         }
-        resp.writeDelimitedTo(out);
 
-        if (closing) running = false;
+        if (req.hasRequestId()) {
+            resp = resp.toBuilder().setRequestId(req.getRequestId()).build();
+        }
+        if (!resp.hasResumeSessionResponse()) {
+            lastResponse = resp;
+        }
+
+        Metrics.recordRequest(req.getSelectorCase(), System.nanoTime() - start);
+        event.end();
+        if (event.shouldCommit()) {
+            event.type = Metrics.requestName(req.getSelectorCase());
+            event.sessionId = sessionId;
+            event.commit();
+        }
+        return resp;
+    }
+
+    /**
+     * @return a kliens lezárta-e a munkamenetet az utolsó kéréssel
+     */
+    boolean isClosing() {
+        return closing;
+    }
+
+    String getSessionId() {
+        return sessionId;
+    }
+
+    /**
+     * A munkamenet kapcsolata megszakadt, innentől a {@link SessionRegistry}
+     * tétlenség esetén eldobhatja.
+     */
+    void detach() {
+        lastActive = System.nanoTime();
+        attached = false;
+    }
+
+    /**
+     * @return kapcsolat nélküli-e a munkamenet, és legalább {@code timeoutNanos} óta tétlen-e
+     */
+    boolean isIdle(long now, long timeoutNanos) {
+        return !attached && now - lastActive > timeoutNanos;
+    }
+
+    /**
+     * Lezárja a munkamenetet, miután a {@link SessionRegistry} eldobta,
+     * vagy egy másik kapcsolat átvette.
+     */
+    synchronized void expire() {
+        expired = true;
+        hasSession = false;
+        labyrinthId = null;
+        labyrinth = null;
+        lastResponse = null;
+        closing = true;
+
+        // The old connection must not outlive its session, whichever server mode it runs in
+        if (socket != null) {
+            closeSocket();
+        }
+        Runnable closer = transportCloser;
+        if (closer != null) {
+            closer.run();
+        }
+    }
+
+    /**
+     * Socket nélküli munkamenetnél a kapcsolatot bontó művelet, amelyet a
+     * munkamenet lejártakor hív (lásd {@link NioServer}).
+     */
+    void setTransportCloser(Runnable closer) {
+        transportCloser = closer;
     }
 
     Response startSession(startSessionRequest req) {
@@ -117,8 +308,15 @@ public class Session extends Thread {
         else {
             hasSession = true;
 
+            // Session IDs are short, a collision must not replace another player's session
+            while (!registry.register(this)) {
+                sessionId = Utils.randomString(8);
+            }
+            resumeToken = newResumeToken();
+
             ssr.setSessionId(sessionId);
             ssr.setStatus(Status.SUCCESS);
+            ssr.setResumeToken(resumeToken);
             log("Session created for user [" + req.getUsername() + ']');
         }
 
@@ -127,6 +325,81 @@ public class Session extends Thread {
             .build();
     }
 
+    /**
+     * Átveszi egy korábbi kapcsolat munkamenetét a játék állapotával együtt,
+     * a régi példányt pedig lezárja.
+     */
+    Response resumeSession(resumeSessionRequest req) {
+        var rsr = resumeSessionResponse.newBuilder();
+        Session old = registry.get(req.getSessionId());
+
+        if (hasSession) {
+            rsr.setSessionId(sessionId);
+            rsr.setStatus(Status.SESSION_ALLOCATION_ERROR);
+            rsr.setCause(ERR_SESSION_EXISTS);
+            log(ERR_SESSION_EXISTS);
+        }
+        else if (old == null || !req.hasResumeToken() || !adopt(old, req.getResumeToken())) {
+            rsr.setSessionId("");
+            rsr.setStatus(Status.SESSION_ALLOCATION_ERROR);
+            rsr.setCause(ERR_SESSION_UNKNOWN);
+            log(ERR_SESSION_UNKNOWN);
+        }
+        else {
+            rsr.setSessionId(sessionId);
+            rsr.setStatus(Status.SUCCESS);
+            rsr.setResumeToken(resumeToken);
+            if (labyrinthId != null) rsr.setLabyrinthId(labyrinthId);
+            if (lastResponse != null) rsr.setLastResponse(lastResponse);
+            log("Session resumed");
+        }
+
+        return Response.newBuilder()
+            .setResumeSessionResponse(rsr)
+            .build();
+    }
+
+    /**
+     * A munkamenet folytatásához szükséges titok. A munkamenet azonosítója
+     * rövid és nem titkos, ezért csak a tulajdonos által ismert token
+     * birtokában vehető át; minden átvételkor új tokent kap.
+     */
+    static String newResumeToken() {
+        byte[] bytes = new byte[16];
+        TOKENS.nextBytes(bytes);
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >>> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    private boolean adopt(Session old, String token) {
+        synchronized (old) {
+            if (!old.hasSession || old.resumeToken == null
+                    || !MessageDigest.isEqual(
+                        old.resumeToken.getBytes(StandardCharsets.US_ASCII),
+                        token.getBytes(StandardCharsets.US_ASCII))
+                    || !registry.replace(old, this)) {
+                return false;
+            }
+
+            sessionId = old.sessionId;
+            hasSession = true;
+            labyrinthId = old.labyrinthId;
+            labyrinth = old.labyrinth;
+            playerPos = old.playerPos;
+            exitPos = old.exitPos;
+            moves = old.moves;
+            optimalMoves = old.optimalMoves;
+            lastResponse = old.lastResponse;
+            resumeToken = newResumeToken();
+
+            old.expire();
+            return true;
+        }
+    }
+
     boolean initializeGenerators() {
         if (labyrinthCache != null && labyrinthGen != null) {
             return true;
@@ -137,15 +410,23 @@ public class Session extends Thread {
             return false;
         }
 
-        try {
-            var files = List.of(labyrinthFiles);
-            labyrinthCache = LabyrinthLite.preload(files);
-            labyrinthGen = new Labyrinth(LABYRINTH_ROWS, LABYRINTH_COLS);
-            return true;
-        }
-        catch (IOException e) {
-            log("Error while reading labyrinth files");
-            return false;
+        synchronized (Session.class) {
+            if (labyrinthCache != null && labyrinthGen != null) {
+                return true;
+            }
+
+            try {
+                var files = List.of(labyrinthFiles);
+                labyrinthCache = LabyrinthLite.preload(files);
+                labyrinthGen = new MazeCache(
+                    new Labyrinth(LABYRINTH_ROWS, LABYRINTH_COLS), MAZE_CACHE_BYTES);
+                return true;
+            }
+            catch (IOException e) {
+                log("Error: " + e.getMessage());
+                log("Error while reading labyrinth files");
+                return false;
+            }
         }
     }
 
@@ -206,11 +487,16 @@ public class Session extends Thread {
                 generator = labyrinthGen;
             }
 
-            labyrinth = generator.generate(labyrinthId);
+            var prepared = generator.prepare(labyrinthId);
+            labyrinth = prepared.maze();
             playerPos = generator.getStart(labyrinth);
             exitPos = generator.getExit(labyrinth);
+            moves = 0;
+            optimalMoves = prepared.distances().distance(playerPos.x, playerPos.y);
 
-            System.out.println(generator.format(labyrinth));
+            if (Log.isEnabled(Log.Level.DEBUG)) {
+                debug(generator.format(labyrinth));
+            }
 
             sgr.setSessionId(sessionId);
             sgr.setLabyrinthId(labyrinthId);
@@ -226,14 +512,28 @@ public class Session extends Thread {
 
     lookAroundResponse.View neighbors(Point p) {
         return lookAroundResponse.View.newBuilder()
-            .setCenter(ViewElement.forNumber(labyrinth[p.y][p.x]))
-            .setNorth(ViewElement.forNumber(labyrinth[p.y-1][p.x]))
-            .setSouth(ViewElement.forNumber(labyrinth[p.y+1][p.x]))
-            .setEast(ViewElement.forNumber(labyrinth[p.y][p.x+1]))
-            .setWest(ViewElement.forNumber(labyrinth[p.y][p.x-1]))
+            .setCenter(ViewElement.forNumber(labyrinth.get(p.x, p.y)))
+            .setNorth(ViewElement.forNumber(labyrinth.get(p.x, p.y-1)))
+            .setSouth(ViewElement.forNumber(labyrinth.get(p.x, p.y+1)))
+            .setEast(ViewElement.forNumber(labyrinth.get(p.x+1, p.y)))
+            .setWest(ViewElement.forNumber(labyrinth.get(p.x-1, p.y)))
             .build();
     }
 
+    /**
+     * A {@code p} körüli {@code (2 * radius + 1)} oldalú négyzet celláit adja
+     * hozzá a válaszhoz soronként, a labirintuson kívüli cellák falak.
+     */
+    void window(lookAroundResponse.Builder lar, Point p, int radius) {
+        for (int y = p.y - radius; y <= p.y + radius; y++) {
+            for (int x = p.x - radius; x <= p.x + radius; x++) {
+                lar.addWindow(labyrinth.contains(x, y)
+                    ? ViewElement.forNumber(labyrinth.get(x, y))
+                    : ViewElement.WALL);
+            }
+        }
+    }
+
     Response lookAround(lookAroundRequest req) {
         var lar = lookAroundResponse.newBuilder();
 
@@ -263,7 +563,13 @@ public class Session extends Thread {
             lar.setLabyrinthId(labyrinthId);
             lar.setStatus(Status.SUCCESS);
             lar.setView(neighbors(playerPos));
-            log("Look around");
+
+            int radius = Math.min(req.getRadius(), MAX_LOOK_RADIUS);
+            if (radius > 0) {
+                lar.setRadius(radius);
+                window(lar, playerPos, radius);
+            }
+            debug("Look around");
         }
 
         return Response.newBuilder()
@@ -282,8 +588,9 @@ public class Session extends Thread {
         }
 
         Point newpos = new Point(playerPos.x + dx, playerPos.y + dy);
-        if (labyrinth[newpos.y][newpos.x] != ViewElement.WALL_VALUE) {
+        if (!labyrinth.isWall(newpos.x, newpos.y)) {
             playerPos = newpos;
+            moves++;
             return true;
         }
         else {
@@ -320,17 +627,21 @@ public class Session extends Thread {
             mtr.setLabyrinthId(labyrinthId);
             mtr.setStatus(Status.FAILURE);
             mtr.setCause(ERR_BAD_MOVE);
-            log(ERR_BAD_MOVE);
+            if (req.getWithView()) mtr.setView(neighbors(playerPos));
+            debug(ERR_BAD_MOVE);
         }
         else {
             mtr.setSessionId(sessionId);
             mtr.setLabyrinthId(labyrinthId);
             mtr.setStatus(Status.SUCCESS);
+            if (req.getWithView()) mtr.setView(neighbors(playerPos));
 
-            String dir = req.getDirection().name();
-            dir = dir.charAt(0) + dir.substring(1).toLowerCase();
+            if (Log.isEnabled(Log.Level.DEBUG)) {
+                String dir = req.getDirection().name();
+                dir = dir.charAt(0) + dir.substring(1).toLowerCase();
 
-            log("Move " + dir);
+                debug("Move " + dir);
+            }
         }
 
         return Response.newBuilder()
@@ -338,6 +649,68 @@ public class Session extends Thread {
             .build();
     }
 
+    /**
+     * Sorban végrehajtja a kérésben kapott lépéseket, az első falnál megáll.
+     * A válasz a sikeres lépések számát és a játékos végső környezetét tartalmazza,
+     * így egy hosszabb útvonal egyetlen kérés-válasz körrel bejárható.
+     */
+    Response moveSequence(moveSequenceRequest req) {
+        var msr = moveSequenceResponse.newBuilder();
+
+        if (!sessionId.equals(req.getSessionId())) {
+            msr.setSessionId("");
+            msr.setLabyrinthId("");
+            msr.setStatus(Status.PROTOCOL_ERROR);
+            msr.setSteps(0);
+            msr.setCause(ERR_SESSION_MISMATCH);
+            log(ERR_SESSION_MISMATCH);
+        }
+        else if (labyrinthId == null) {
+            msr.setSessionId(sessionId);
+            msr.setLabyrinthId("");
+            msr.setStatus(Status.PROTOCOL_ERROR);
+            msr.setSteps(0);
+            msr.setCause(ERR_GAME_MISSING);
+            log(ERR_GAME_MISSING);
+        }
+        else if (!labyrinthId.equals(req.getLabyrinthId())) {
+            msr.setSessionId(sessionId);
+            msr.setLabyrinthId("");
+            msr.setStatus(Status.PROTOCOL_ERROR);
+            msr.setSteps(0);
+            msr.setCause(ERR_GAME_MISMATCH);
+            log(ERR_GAME_MISMATCH);
+        }
+        else {
+            int count = req.getDirectionsCount();
+            int steps = 0;
+            while (steps < count && tryMovePlayer(req.getDirections(steps))) {
+                steps++;
+            }
+
+            msr.setSessionId(sessionId);
+            msr.setLabyrinthId(labyrinthId);
+            msr.setSteps(steps);
+            msr.setView(neighbors(playerPos));
+
+            if (steps == count) {
+                msr.setStatus(Status.SUCCESS);
+            }
+            else {
+                msr.setStatus(Status.FAILURE);
+                msr.setCause(ERR_BAD_MOVE);
+            }
+
+            if (Log.isEnabled(Log.Level.DEBUG)) {
+                debug("Move " + steps + " of " + count + " steps");
+            }
+        }
+
+        return Response.newBuilder()
+            .setMoveSequenceResponse(msr)
+            .build();
+    }
+
     Response quitGame(quitGameRequest req) {
         var qgr = quitGameResponse.newBuilder();
 
@@ -363,7 +736,7 @@ public class Session extends Thread {
             log(ERR_GAME_MISMATCH);
         }
         else {
-            int playerCell = labyrinth[playerPos.y][playerPos.x];
+            int playerCell = labyrinth.get(playerPos.x, playerPos.y);
             var gamestate = playerCell == ViewElement.EXIT_VALUE
                 ? GameStatus.WON
                 : GameStatus.LOST;
@@ -372,6 +745,13 @@ public class Session extends Thread {
             qgr.setLabyrinthId(labyrinthId);
             qgr.setStatus(Status.SUCCESS);
             qgr.setGameStatus(gamestate);
+            qgr.setMoves((int) Math.min(moves, 0xFFFFFFFFL));
+            if (optimalMoves != DistanceField.UNREACHABLE) {
+                qgr.setOptimalMoves(optimalMoves);
+                if (gamestate == GameStatus.WON) {
+                    qgr.setEfficiency(moves == 0 ? 1.0 : (double) optimalMoves / moves);
+                }
+            }
 
             labyrinthId = null;
             log("Game ended");
@@ -394,6 +774,7 @@ public class Session extends Thread {
         else {
             hasSession = false;
             labyrinthId = null;
+            registry.unregister(this);
 
             closing = true;
 
@@ -407,7 +788,52 @@ public class Session extends Thread {
             .build();
     }
 
+    Response listLabyrinths(listLabyrinthsRequest req) {
+        var llr = listLabyrinthsResponse.newBuilder();
+
+        if (!sessionId.equals(req.getSessionId())) {
+            llr.setSessionId("");
+            llr.setStatus(Status.PROTOCOL_ERROR);
+            llr.setCause(ERR_SESSION_MISMATCH);
+            log(ERR_SESSION_MISMATCH);
+        }
+        else if (!initializeGenerators()) {
+            llr.setSessionId(sessionId);
+            llr.setStatus(Status.FAILURE);
+            llr.setCause("");
+            log("Could not load labyrinths from files");
+        }
+        else {
+            for (LabyrinthInfo info : labyrinthCache.list()) {
+                var li = labyrinthInfo.newBuilder()
+                    .setLabyrinthId(info.name())
+                    .setRows(info.rows())
+                    .setCols(info.cols())
+                    .setStartX(info.start().x)
+                    .setStartY(info.start().y)
+                    .setExitX(info.exit().x)
+                    .setExitY(info.exit().y)
+                    .setWallCells(info.wallCells())
+                    .setOpenCells(info.openCells())
+                    .setContentHash(info.contentHash());
+                if (info.isSolvable()) {
+                    li.setShortestPath(info.shortestPath());
+                }
+                llr.addLabyrinths(li);
+            }
+
+            llr.setSessionId(sessionId);
+            llr.setStatus(Status.SUCCESS);
+        }
+
+        return Response.newBuilder()
+            .setListLabyrinthsResponse(llr)
+            .build();
+    }
+
     void closeSocket() {
+        if (socket.isClosed()) return;
+
         try {
             socket.close();
             log("Closed socket");
@@ -422,17 +848,22 @@ public class Session extends Thread {
         log("Start session");
 
         InputStream in;
-        OutputStream out;
+        OutputStream guarded;
+        CodedOutputStream out;
 
         try {
-            in = socket.getInputStream();
-            out = socket.getOutputStream();
+            in = new BufferedInputStream(socket.getInputStream(), IO_BUFFER_SIZE);
+            // Socket timeouts only cover reads, a client that stops reading is caught by the watchdog
+            guarded = WriteWatchdog.guard(socket, socket.getOutputStream());
+            out = CodedOutputStream.newInstance(guarded, IO_BUFFER_SIZE);
             log("Open communication streams");
         }
         catch (IOException e) {
             log("Error:" + e.getMessage());
             log("Failed to open communication streams");
             closeSocket();
+            detach();
+            Server.releaseConnection();
             return;
         }
 
@@ -442,12 +873,19 @@ public class Session extends Thread {
             }
             log("Closing session");
         }
+        catch (SocketTimeoutException e) {
+            Server.timedOutConnections.incrementAndGet();
+            log("Connection timed out");
+        }
         catch (IOException e) {
             log("Error: " + e.getMessage());
             log("Error during communication");
         }
         finally {
+            WriteWatchdog.release(guarded);
             closeSocket();
+            detach();
+            Server.releaseConnection();
         }
 
         log("Good-bye");
@@ -0,0 +1,91 @@
+package hu.ppke.itk.java.labyrinthv09.server;
+
+import java.util.concurrent.*;
+
+/**
+ * A szerver összes élő munkamenete azonosító szerint. Egy munkamenet a
+ * kapcsolata megszakadása után is itt marad, így egy új kapcsolat
+ * {@code resumeSessionRequest}-tel folytathatja. A kapcsolat nélküli
+ * munkameneteket {@code idleTimeoutMillis} tétlenség után eldobja.
+ */
+public class SessionRegistry {
+    private static final String LOG_SOURCE = "REGISTRY";
+
+    private final ConcurrentHashMap<String, Session> sessions = new ConcurrentHashMap<>();
+    private final long idleTimeoutMillis;
+    private volatile ScheduledExecutorService sweeper;
+
+    /**
+     * @param idleTimeoutMillis ennyi tétlenség után dobja el a kapcsolat nélküli munkameneteket
+     */
+    public SessionRegistry(long idleTimeoutMillis) {
+        this.idleTimeoutMillis = idleTimeoutMillis;
+    }
+
+    /**
+     * @return sikerült-e, azaz nincs még ilyen azonosítójú munkamenet
+     */
+    boolean register(Session session) {
+        if (sessions.putIfAbsent(session.getSessionId(), session) != null) {
+            return false;
+        }
+        startSweeper();
+        return true;
+    }
+
+    void unregister(Session session) {
+        sessions.remove(session.getSessionId(), session);
+    }
+
+    /**
+     * @return a munkamenet, vagy {@code null}, ha nincs ilyen, vagy már lejárt
+     */
+    Session get(String sessionId) {
+        return sessions.get(sessionId);
+    }
+
+    /**
+     * Az azonosítóhoz a régi helyett az új munkamenetet rendeli.
+     *
+     * @return sikerült-e, azaz a régi munkamenet még nem járt le
+     */
+    boolean replace(Session old, Session session) {
+        return sessions.replace(old.getSessionId(), old, session);
+    }
+
+    public int size() {
+        return sessions.size();
+    }
+
+    private void startSweeper() {
+        if (sweeper != null) return;
+
+        synchronized (this) {
+            if (sweeper != null) return;
+
+            long period = Math.max(1000, idleTimeoutMillis / 4);
+            sweeper = Executors.newSingleThreadScheduledExecutor(task -> {
+                Thread t = new Thread(task, "session-sweeper");
+                t.setDaemon(true);
+                return t;
+            });
+            sweeper.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Eldobja azokat a kapcsolat nélküli munkameneteket, amelyek legalább
+     * {@code idleTimeoutMillis} óta nem kaptak kérést.
+     */
+    void evictIdle() {
+        long now = System.nanoTime();
+        long timeout = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis);
+
+        for (Session s : sessions.values()) {
+            if (s.isIdle(now, timeout) && sessions.remove(s.getSessionId(), s)) {
+                s.expire();
+                Log.info(LOG_SOURCE, "Evicted idle session " + s.getSessionId());
+            }
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package hu.ppke.itk.java.labyrinthv09.server;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.Set;
+import java.util.concurrent.*;
+
+/**
+ * A blokkoló kiszolgálás írásainak felügyelete. Az {@code SO_TIMEOUT} csak az
+ * olvasásra vonatkozik, egy válaszokat nem olvasó kliens felé az írás örökre
+ * blokkolhatná a munkamenet szálát. A felügyelt kimenet minden írásnál
+ * feljegyzi a kezdés idejét, egy háttérszál pedig bontja azt a kapcsolatot,
+ * amelynek írása {@link Server#READ_TIMEOUT_MILLIS} óta nem fejeződött be.
+ */
+final class WriteWatchdog {
+    static final long CHECK_PERIOD_MILLIS = 1000;
+
+    private static final Set<Guarded> guarded = ConcurrentHashMap.newKeySet();
+    private static volatile ScheduledExecutorService checker;
+
+    private WriteWatchdog() {}
+
+    /**
+     * @param socket a kapcsolat, amelyet túllépéskor bont
+     * @param out a kapcsolat kimenete
+     * @return a felügyelt kimenet, használat után {@link #release}-szel kell elengedni
+     */
+    static OutputStream guard(Socket socket, OutputStream out) {
+        Guarded g = new Guarded(socket, out);
+        if (Server.READ_TIMEOUT_MILLIS > 0) {
+            guarded.add(g);
+            start();
+        }
+        return g;
+    }
+
+    static void release(OutputStream out) {
+        guarded.remove(out);
+    }
+
+    private static void start() {
+        if (checker != null) return;
+
+        synchronized (WriteWatchdog.class) {
+            if (checker != null) return;
+
+            checker = Executors.newSingleThreadScheduledExecutor(task -> {
+                Thread t = new Thread(task, "write-watchdog");
+                t.setDaemon(true);
+                return t;
+            });
+            checker.scheduleWithFixedDelay(WriteWatchdog::check,
+                CHECK_PERIOD_MILLIS, CHECK_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    static void check() {
+        long now = System.nanoTime();
+        long timeout = TimeUnit.MILLISECONDS.toNanos(Server.READ_TIMEOUT_MILLIS);
+
+        for (Guarded g : guarded) {
+            long started = g.writeStarted;
+            if (started != 0 && now - started > timeout && guarded.remove(g)) {
+                Server.timedOutConnections.incrementAndGet();
+                Log.warn(Server.LOG_SOURCE, "Write stalled for " + Server.READ_TIMEOUT_MILLIS
+                    + " ms, closing connection");
+                try {
+                    // The blocked write fails with an IOException and the session ends as usual
+                    g.socket.close();
+                }
+                catch (IOException e) {
+                    // Already closed
+                }
+            }
+        }
+    }
+
+    private static final class Guarded extends FilterOutputStream {
+        final Socket socket;
+        volatile long writeStarted;
+
+        Guarded(Socket socket, OutputStream out) {
+            super(out);
+            this.socket = socket;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            writeStarted = System.nanoTime();
+            try {
+                out.write(b);
+            }
+            finally {
+                writeStarted = 0;
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            writeStarted = System.nanoTime();
+            try {
+                out.write(b, off, len);
+            }
+            finally {
+                writeStarted = 0;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            writeStarted = System.nanoTime();
+            try {
+                out.flush();
+            }
+            finally {
+                writeStarted = 0;
+            }
+        }
+    }
+}